@@ -0,0 +1,13 @@
+package com.alex.blog.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CommentPageDto(
+        List<CommentReadDto> comments,
+        boolean hasNext,
+        String next
+) {
+}
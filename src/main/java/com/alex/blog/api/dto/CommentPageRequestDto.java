@@ -0,0 +1,14 @@
+package com.alex.blog.api.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+public record CommentPageRequestDto(
+                            @NotNull(message = "The limit should be not null value")
+                            @Positive(message = "The limit should be positive value")
+                            @Max(value = 1000, message = "The limit should be not greater than 1000")
+                            Integer limit,
+
+                            String cursor) {
+}
@@ -0,0 +1,5 @@
+package com.alex.blog.api.dto;
+
+public record TagSuggestionDto(String tag,
+                               Long postsCount) {
+}
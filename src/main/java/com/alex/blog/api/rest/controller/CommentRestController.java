@@ -1,6 +1,8 @@
 package com.alex.blog.api.rest.controller;
 
 import com.alex.blog.api.dto.CommentCreateDto;
+import com.alex.blog.api.dto.CommentPageDto;
+import com.alex.blog.api.dto.CommentPageRequestDto;
 import com.alex.blog.api.dto.CommentReadDto;
 import com.alex.blog.api.dto.CommentUpdateDto;
 import com.alex.blog.model.Comment;
@@ -9,6 +11,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -33,6 +36,13 @@ public class CommentRestController {
                 .body(commentService.findCommentsByPostId(postId));
     }
 
+    @GetMapping(path = "{postId}/comments", params = "limit", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<CommentPageDto> getCommentsPage(@PathVariable("postId") Long postId,
+                                                          @ModelAttribute @Validated CommentPageRequestDto commentPageRequestDto) {
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(commentService.findCommentsPageByPostId(postId, commentPageRequestDto));
+    }
+
     @PutMapping(path = "/{postId}/comments/{commentId}",
             consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<CommentReadDto> updateComment(@PathVariable("postId") Long postId,
@@ -59,6 +69,18 @@ public class CommentRestController {
                 .status(HttpStatus.BAD_REQUEST).build();
     }
 
+    @PostMapping(path = "/{postId}/comments/batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<CommentReadDto>> saveComments(@PathVariable("postId") Long postId,
+                                                             @RequestBody List<CommentCreateDto> commentCreateDtos) {
+        return commentCreateDtos.stream().allMatch(dto -> Objects.equals(postId, dto.postId()))
+                ? ResponseEntity.status(HttpStatus.CREATED)
+                .body(commentService.saveComments(postId, commentCreateDtos))
+
+                : ResponseEntity
+                .status(HttpStatus.BAD_REQUEST).build();
+    }
+
     @DeleteMapping("/{postId}/comments/{commentId}")
     @ResponseStatus(HttpStatus.OK)
     public void delete(@PathVariable("postId") Long postId,
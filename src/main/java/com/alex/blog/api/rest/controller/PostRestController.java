@@ -4,14 +4,17 @@ import com.alex.blog.aop.annotation.Loggable;
 import com.alex.blog.api.dto.PostCreateDto;
 import com.alex.blog.api.dto.PostReadDto;
 import com.alex.blog.api.dto.PostUpdateDto;
+import com.alex.blog.image.ImageVariant;
+import com.alex.blog.image.PostImage;
+import com.alex.blog.model.ImageMetadata;
 import com.alex.blog.search.PostPageDto;
 import com.alex.blog.search.SearchDto;
 import com.alex.blog.service.PostService;
 import jdk.jfr.ContentType;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
@@ -20,16 +23,28 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.lang.invoke.VarHandle;
+import java.time.Duration;
 
 @RestController
-@RequiredArgsConstructor
 @RequestMapping("/api/posts")
 @Slf4j
 public class PostRestController {
 
     public final PostService postService;
+    // the SHA-256 of no bytes
+    private static final String EMPTY_IMAGE_HASH = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    private final CacheControl imageCacheControl;
+
+    public PostRestController(PostService postService,
+                              @Value("${blog.images.cache.max-age:1h}") Duration imageMaxAge) {
+        this.postService = postService;
+        this.imageCacheControl = CacheControl.maxAge(imageMaxAge);
+    }
 
 
     @GetMapping(path = "/{postId}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -64,6 +79,15 @@ public class PostRestController {
                 .body(postService.findPageByCriteria(searchDto));
     }
 
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "search", defaultValue = "") String search) {
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> postService.exportByCriteria(search, outputStream));
+    }
+
     @PutMapping(value = "/{postId}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Void> updateImage(@PathVariable("postId") Long postId,
                                             @RequestParam(value = "image") MultipartFile image) {
@@ -74,11 +98,25 @@ public class PostRestController {
     }
 
     @GetMapping(value = "/{postId}/image")
-    public ResponseEntity<byte[]> getImage(@PathVariable("postId") Long postId) {
-        byte[] image = postService.getImage(postId);
-        return image.length > 0
-                ? ResponseEntity.status(HttpStatus.OK).contentType(MediaType.IMAGE_JPEG).cacheControl(CacheControl.noStore()).body(image)
-                : ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+    public ResponseEntity<Resource> getImage(@PathVariable("postId") Long postId,
+                                             @RequestParam(value = "size", defaultValue = "original") ImageVariant size) throws IOException {
+        PostImage image = postService.getImage(postId, size);
+        if (isEmpty(image)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        ImageMetadata metadata = image.metadata();
+        // the images saved before their type was recorded were served as jpeg
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK)
+                .contentType(metadata.contentType() != null ? MediaType.parseMediaType(metadata.contentType()) : MediaType.IMAGE_JPEG)
+                .cacheControl(image.substitute() ? CacheControl.noCache() : imageCacheControl);
+        // a matching If-None-Match or If-Modified-Since is answered with 304 before the content is read
+        if (metadata.hash() != null) {
+            response.eTag(metadata.hash());
+        }
+        if (metadata.updatedAt() != null) {
+            response.lastModified(metadata.updatedAt());
+        }
+        return response.body(image.content());
     }
 
     @PostMapping(path = "/{postId}/likes")
@@ -93,5 +131,11 @@ public class PostRestController {
     public void deletePostWithComments(@PathVariable("postId") Long postId) {
         postService.deletePost(postId);
     }
-}
 
+    // an empty upload is recorded with the hash of no bytes. Only the images saved before their hash was recorded
+    // are measured, they have no ETag to answer a not modified response with anyway
+    private static boolean isEmpty(PostImage image) throws IOException {
+        String hash = image.metadata().hash();
+        return hash != null ? EMPTY_IMAGE_HASH.equals(hash) : image.content().contentLength() == 0;
+    }
+}
@@ -0,0 +1,28 @@
+package com.alex.blog.api.rest.controller;
+
+import com.alex.blog.api.dto.TagSuggestionDto;
+import com.alex.blog.service.TagService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/tags")
+@RequiredArgsConstructor
+public class TagRestController {
+    private final TagService tagService;
+
+    @GetMapping(path = "/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<TagSuggestionDto>> suggest(@RequestParam(value = "prefix", defaultValue = "") String prefix,
+                                                          @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(tagService.suggestTags(prefix, limit));
+    }
+}
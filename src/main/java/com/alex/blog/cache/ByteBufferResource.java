@@ -0,0 +1,69 @@
+package com.alex.blog.cache;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A cached image read by every response through its own view of the buffer, a skip for a Range request only moves
+ * the position of the view.
+ */
+class ByteBufferResource extends AbstractResource {
+
+    private final ByteBuffer content;
+    private final String description;
+
+    ByteBufferResource(ByteBuffer content, String description) {
+        this.content = content;
+        this.description = description;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return content.capacity();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        ByteBuffer view = content.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return view.hasRemaining() ? view.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!view.hasRemaining()) {
+                    return len == 0 ? 0 : -1;
+                }
+                int read = Math.min(len, view.remaining());
+                view.get(b, off, read);
+                return read;
+            }
+
+            @Override
+            public long skip(long n) {
+                int skipped = (int) Math.max(0, Math.min(n, view.remaining()));
+                view.position(view.position() + skipped);
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return view.remaining();
+            }
+        };
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+}
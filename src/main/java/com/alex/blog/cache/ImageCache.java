@@ -0,0 +1,139 @@
+package com.alex.blog.cache;
+
+import com.alex.blog.event.PostDeletedEvent;
+import com.alex.blog.event.PostImageUpdatedEvent;
+import com.alex.blog.image.ImageVariant;
+import com.alex.blog.image.PostImage;
+import com.alex.blog.model.ImageMetadata;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of the post images with their metadata in direct buffers outside the heap, bounded by
+ * {@code blog.images.memory-cache.max-size} bytes. An image is copied only when it is requested the second time
+ * since it was last loaded, so a long tail of images requested once allocates no direct memory, and Caffeine admits
+ * it only if it is requested more often than the images it would evict. A cached image is sent without reading the database and without a heap copy of
+ * it, the memory of an evicted one is released with its buffer by the garbage collector (bounded by
+ * {@code -XX:MaxDirectMemorySize}). An image upload or a post delete evicts all the variants of the post,
+ * waiting for a load of the same image in progress, so an image loaded before the change is never kept.
+ * The expiration bounds how long an image replaced by another instance is still served.
+ * Images larger than {@code blog.images.memory-cache.max-image-size} and the originals served instead
+ * of a missing variant are not cached.
+ */
+@Component
+public class ImageCache {
+
+    private static final String CACHE_NAME = "images";
+    // the images requested once since they were last loaded, only the keys are kept
+    private static final long MAX_REQUESTED_ONCE = 10_000;
+
+    private final Cache<Key, CachedImage> images;
+    private final Cache<Key, Boolean> requestedOnce;
+    private final boolean enabled;
+    private final long maxImageSize;
+
+    public ImageCache(@Value("${blog.images.memory-cache.max-size:256MB}") DataSize maxSize,
+                      @Value("${blog.images.memory-cache.max-image-size:4MB}") DataSize maxImageSize,
+                      @Value("${blog.images.memory-cache.expire-after-write:60s}") Duration expireAfterWrite,
+                      MeterRegistry meterRegistry) {
+        this.images = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Key key, CachedImage image) -> image.content().capacity())
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.requestedOnce = Caffeine.newBuilder()
+                .maximumSize(MAX_REQUESTED_ONCE)
+                .build();
+        this.enabled = maxSize.toBytes() > 0;
+        this.maxImageSize = Math.min(maxImageSize.toBytes(), Integer.MAX_VALUE);
+        CaffeineCacheMetrics.monitor(meterRegistry, images, CACHE_NAME);
+    }
+
+    public PostImage getOrLoad(Long postId, ImageVariant variant, Supplier<PostImage> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        PostImage[] notCached = new PostImage[1];
+        CachedImage cached = images.get(new Key(postId, variant), key -> {
+            PostImage image = loader.get();
+            CachedImage copy = image.substitute() || isRequestedFirstTime(key) ? null : copyOf(image);
+            if (copy == null) {
+                notCached[0] = image;
+            }
+            return copy;
+        });
+        return cached != null ? cached.toPostImage(postId) : notCached[0];
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostImageUpdated(PostImageUpdatedEvent event) {
+        invalidate(event.postId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostDeleted(PostDeletedEvent event) {
+        invalidate(event.postId());
+    }
+
+    private void invalidate(Long postId) {
+        for (ImageVariant variant : ImageVariant.values()) {
+            images.invalidate(new Key(postId, variant));
+        }
+    }
+
+    private boolean isRequestedFirstTime(Key key) {
+        if (requestedOnce.asMap().remove(key) != null) {
+            return false;
+        }
+        requestedOnce.put(key, Boolean.TRUE);
+        return true;
+    }
+
+    private CachedImage copyOf(PostImage image) {
+        try {
+            long size = image.content().contentLength();
+            if (size > maxImageSize) {
+                return null;
+            }
+            ByteBuffer content = ByteBuffer.allocateDirect((int) size);
+            try (InputStream in = image.content().getInputStream(); ReadableByteChannel channel = Channels.newChannel(in)) {
+                int read;
+                do {
+                    read = channel.read(content);
+                } while (read >= 0 && content.hasRemaining());
+            }
+            if (content.hasRemaining()) {
+                throw new IOException("The " + image.content().getDescription() + " is shorter than its length " + size);
+            }
+            return new CachedImage(content.flip().asReadOnlyBuffer(), image.metadata());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Key(Long postId, ImageVariant variant) {
+    }
+
+    private record CachedImage(ByteBuffer content, ImageMetadata metadata) {
+
+        private PostImage toPostImage(Long postId) {
+            return new PostImage(new ByteBufferResource(content, "cached image of post " + postId), metadata, false);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.alex.blog.cache;
+
+import com.alex.blog.event.PostCreatedEvent;
+import com.alex.blog.event.PostDeletedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Compressed bitmap of the post ids, loaded at startup and kept current by the committed post events of this instance.
+ * Only a known id is answered from memory. A missing id may belong to a post another instance has created since,
+ * even with a lower id committed after the load, so it is not answered and the caller asks the database.
+ * The bitmap is reloaded every interval, which bounds how long a post deleted by another instance is still answered.
+ */
+@Component
+@Slf4j
+public class LivePostIdsCache {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Duration reloadInterval;
+    private ScheduledExecutorService reloader;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Roaring64Bitmap postIds = new Roaring64Bitmap();
+    private List<Consumer<Roaring64Bitmap>> changesDuringLoad;
+    private volatile boolean ready;
+
+    public LivePostIdsCache(JdbcTemplate jdbcTemplate,
+                            @Value("${blog.posts.ids-cache.enabled:true}") boolean enabled,
+                            @Value("${blog.posts.ids-cache.reload-interval:5m}") Duration reloadInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.reloadInterval = reloadInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            load();
+            if (reloadInterval.isPositive()) {
+                reloader = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("post-ids-reloader").factory());
+                reloader.scheduleWithFixedDelay(this::loadQuietly, reloadInterval.toMillis(), reloadInterval.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            changesDuringLoad = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Roaring64Bitmap loaded = new Roaring64Bitmap();
+        try {
+            jdbcTemplate.query("SELECT id FROM posts", (RowCallbackHandler) rs -> loaded.addLong(rs.getLong("id")));
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringLoad = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        loaded.runOptimize();
+
+        lock.writeLock().lock();
+        try {
+            changesDuringLoad.forEach(change -> change.accept(loaded));
+            changesDuringLoad = null;
+            postIds = loaded;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("The ids of {} posts were loaded", loaded.getLongCardinality());
+    }
+
+    /**
+     * @return empty when the ids are not loaded or the id is unknown
+     */
+    public Optional<Boolean> contains(Long postId) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            return postIds.contains(postId) ? Optional.of(true) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostCreated(PostCreatedEvent event) {
+        apply(ids -> ids.addLong(event.postId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostDeleted(PostDeletedEvent event) {
+        apply(ids -> ids.removeLong(event.postId()));
+    }
+
+    private void loadQuietly() {
+        try {
+            load();
+        } catch (RuntimeException e) {
+            log.error("The post ids were not reloaded, the loaded ones are kept", e);
+        }
+    }
+
+    private void apply(Consumer<Roaring64Bitmap> change) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            change.accept(postIds);
+            if (changesDuringLoad != null) {
+                changesDuringLoad.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
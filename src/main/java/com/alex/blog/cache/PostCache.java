@@ -0,0 +1,87 @@
+package com.alex.blog.cache;
+
+import com.alex.blog.api.dto.PostReadDto;
+import com.alex.blog.event.CommentsCountChangedEvent;
+import com.alex.blog.event.LikesCountChangedEvent;
+import com.alex.blog.event.PostDeletedEvent;
+import com.alex.blog.event.PostImageUpdatedEvent;
+import com.alex.blog.event.PostUpdatedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Read-through cache of the posts with their tags keyed by the post id. Caffeine admits a new post only
+ * if it is used more often than the post it would evict, so a crawler reading every post once doesn't flush the hot ones.
+ * A post change evicts the post, a counter change patches it in place. An invalidation or a patch waits for
+ * the load of the same post in progress, so a post loaded before a change is never kept.
+ * The expiration bounds the staleness caused by writes of other instances.
+ * Besides the {@code cache.*} metrics with {@code cache=posts} (including {@code cache.load.duration}),
+ * the hit ratio is published as {@code cache.hit.ratio}.
+ */
+@Component
+public class PostCache {
+
+    private static final String CACHE_NAME = "posts";
+
+    private final Cache<Long, PostReadDto> posts;
+
+    public PostCache(@Value("${blog.posts.cache.max-size:10000}") long maxSize,
+                     @Value("${blog.posts.cache.expire-after-write:60s}") Duration expireAfterWrite,
+                     MeterRegistry meterRegistry) {
+        this.posts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, posts, CACHE_NAME);
+        Gauge.builder("cache.hit.ratio", posts, cache -> cache.stats().hitRate())
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    public Optional<PostReadDto> getOrLoad(Long postId, Function<Long, Optional<PostReadDto>> loader) {
+        return Optional.ofNullable(posts.get(postId, id -> loader.apply(id).orElse(null)));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostUpdated(PostUpdatedEvent event) {
+        posts.invalidate(event.postId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostDeleted(PostDeletedEvent event) {
+        posts.invalidate(event.postId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostImageUpdated(PostImageUpdatedEvent event) {
+        posts.invalidate(event.postId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLikesCountChanged(LikesCountChangedEvent event) {
+        patch(event.postId(), post -> new PostReadDto(post.id(), post.title(), post.text(), post.tags(),
+                event.likesCount(), post.commentsCount()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentsCountChanged(CommentsCountChangedEvent event) {
+        patch(event.postId(), post -> new PostReadDto(post.id(), post.title(), post.text(), post.tags(),
+                post.likesCount(), event.commentsCount()));
+    }
+
+    private void patch(Long postId, UnaryOperator<PostReadDto> patcher) {
+        posts.asMap().computeIfPresent(postId, (id, post) -> patcher.apply(post));
+    }
+}
@@ -0,0 +1,122 @@
+package com.alex.blog.cache;
+
+import com.alex.blog.api.dto.PostReadDto;
+import com.alex.blog.event.CommentsCountChangedEvent;
+import com.alex.blog.event.LikesCountChangedEvent;
+import com.alex.blog.event.PostCreatedEvent;
+import com.alex.blog.event.PostDeletedEvent;
+import com.alex.blog.event.PostUpdatedEvent;
+import com.alex.blog.search.Criteria;
+import com.alex.blog.search.PostPageDto;
+import com.alex.blog.search.SearchDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Search result pages keyed by the search request. A post change evicts only the pages whose tags
+ * the post has (had), a counter change patches the pages showing the post in place,
+ * the expiration bounds the staleness caused by writes of other instances.
+ * Hit, miss and eviction counters are published as the {@code cache.*} metrics with {@code cache=search.pages}.
+ */
+@Component
+public class PostPageCache {
+
+    private final Cache<SearchDto, PostPageDto> pages;
+    private final AtomicLong generation = new AtomicLong();
+
+    public PostPageCache(@Value("${blog.search.page-cache.max-size:1000}") long maxSize,
+                         @Value("${blog.search.page-cache.expire-after-write:60s}") Duration expireAfterWrite,
+                         MeterRegistry meterRegistry) {
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "search.pages");
+    }
+
+    public PostPageDto getOrLoad(SearchDto searchDto, Supplier<PostPageDto> loader) {
+        PostPageDto page = pages.getIfPresent(searchDto);
+        if (page != null) {
+            return page;
+        }
+        long loadedGeneration = generation.get();
+        page = loader.get();
+        if (generation.get() == loadedGeneration) {
+            pages.put(searchDto, page);
+        }
+        return page;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostCreated(PostCreatedEvent event) {
+        evictIf((criteria, page) -> hasAllTags(event.tags(), criteria));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostUpdated(PostUpdatedEvent event) {
+        evictIf((criteria, page) -> {
+            boolean matchedBefore = hasAllTags(event.oldTags(), criteria);
+            boolean matchesNow = hasAllTags(event.newTags(), criteria);
+            return matchedBefore != matchesNow
+                    || ((matchedBefore || matchesNow) && !criteria.title().isEmpty())
+                    || containsPost(page, event.postId());
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostDeleted(PostDeletedEvent event) {
+        evictIf((criteria, page) -> hasAllTags(event.tags(), criteria) || containsPost(page, event.postId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLikesCountChanged(LikesCountChangedEvent event) {
+        patch(event.postId(), post -> new PostReadDto(post.id(), post.title(), post.text(), post.tags(),
+                event.likesCount(), post.commentsCount()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentsCountChanged(CommentsCountChangedEvent event) {
+        patch(event.postId(), post -> new PostReadDto(post.id(), post.title(), post.text(), post.tags(),
+                post.likesCount(), event.commentsCount()));
+    }
+
+    private void evictIf(BiPredicate<Criteria, PostPageDto> affected) {
+        generation.incrementAndGet();
+        pages.asMap().entrySet().removeIf(entry ->
+                affected.test(Criteria.fromSearch(entry.getKey().search()).normalize(), entry.getValue()));
+    }
+
+    private void patch(Long postId, UnaryOperator<PostReadDto> patcher) {
+        generation.incrementAndGet();
+        pages.asMap().replaceAll((searchDto, page) -> containsPost(page, postId) ? patchPage(page, postId, patcher) : page);
+    }
+
+    private PostPageDto patchPage(PostPageDto page, Long postId, UnaryOperator<PostReadDto> patcher) {
+        List<PostReadDto> posts = page.posts().stream()
+                .map(post -> post.id().equals(postId) ? patcher.apply(post) : post)
+                .toList();
+        return new PostPageDto(posts, page.hasPrev(), page.hasNext(), page.lastPage(), page.next(), page.prev());
+    }
+
+    private boolean containsPost(PostPageDto page, Long postId) {
+        return page.posts().stream().anyMatch(post -> post.id().equals(postId));
+    }
+
+    private boolean hasAllTags(List<String> postTags, Criteria criteria) {
+        return postTags == null ? criteria.tags().isEmpty() : new HashSet<>(postTags).containsAll(criteria.tags());
+    }
+}
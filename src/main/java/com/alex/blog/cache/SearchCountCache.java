@@ -0,0 +1,80 @@
+package com.alex.blog.cache;
+
+import com.alex.blog.event.PostCreatedEvent;
+import com.alex.blog.event.PostDeletedEvent;
+import com.alex.blog.event.PostUpdatedEvent;
+import com.alex.blog.search.Criteria;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Total counts of the search queries keyed by the normalized criteria.
+ * A post change only evicts the counts whose tags the post has (had), any title may match the post,
+ * the expiration bounds the staleness caused by writes of other instances.
+ */
+@Component
+public class SearchCountCache {
+
+    private final Cache<Criteria, Long> counts;
+    private final AtomicLong generation = new AtomicLong();
+
+    public SearchCountCache(@Value("${blog.search.count-cache.max-size:10000}") long maxSize,
+                            @Value("${blog.search.count-cache.expire-after-write:60s}") Duration expireAfterWrite) {
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    public Long getOrLoad(Criteria criteria, Supplier<Long> loader) {
+        Criteria key = criteria.normalize();
+        Long count = counts.getIfPresent(key);
+        if (count != null) {
+            return count;
+        }
+        long loadedGeneration = generation.get();
+        count = loader.get();
+        if (count != null && generation.get() == loadedGeneration) {
+            counts.put(key, count);
+        }
+        return count;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostCreated(PostCreatedEvent event) {
+        evictIf(key -> hasAllTags(event.tags(), key));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostUpdated(PostUpdatedEvent event) {
+        evictIf(key -> {
+            boolean matchedBefore = hasAllTags(event.oldTags(), key);
+            boolean matchesNow = hasAllTags(event.newTags(), key);
+            return matchedBefore != matchesNow || ((matchedBefore || matchesNow) && !key.title().isEmpty());
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostDeleted(PostDeletedEvent event) {
+        evictIf(key -> hasAllTags(event.tags(), key));
+    }
+
+    private void evictIf(Predicate<Criteria> affected) {
+        generation.incrementAndGet();
+        counts.asMap().keySet().removeIf(affected);
+    }
+
+    private boolean hasAllTags(List<String> postTags, Criteria key) {
+        return postTags == null ? key.tags().isEmpty() : new HashSet<>(postTags).containsAll(key.tags());
+    }
+}
@@ -0,0 +1,22 @@
+package com.alex.blog.config;
+
+import com.alex.blog.repository.dialect.H2SqlDialect;
+import com.alex.blog.repository.dialect.PostgresSqlDialect;
+import com.alex.blog.repository.dialect.SqlDialect;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+@Configuration
+public class SqlDialectConfig {
+
+    @Bean
+    public SqlDialect sqlDialect(DataSource dataSource) throws MetaDataAccessException {
+        String productName = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        return "H2".equals(productName) ? new H2SqlDialect() : new PostgresSqlDialect();
+    }
+}
@@ -0,0 +1,65 @@
+package com.alex.blog.counter;
+
+import com.alex.blog.repository.PostManagementRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folds the like shards into {@code posts.likes_count} every interval, so the search and read queries
+ * stay on the posts table and lag behind the likes by one interval at most.
+ */
+@Component
+@Slf4j
+public class LikeShardsCompactor {
+
+    private final PostManagementRepository postManagementRepository;
+    private final boolean enabled;
+    private final Duration interval;
+    private final int batchSize;
+    private ScheduledExecutorService compactor;
+
+    public LikeShardsCompactor(PostManagementRepository postManagementRepository,
+                               @Value("${blog.likes.shards.count:0}") int likeShards,
+                               @Value("${blog.likes.shards.compaction-interval:5s}") Duration interval,
+                               @Value("${blog.likes.shards.compaction-batch-size:1000}") int batchSize) {
+        this.postManagementRepository = postManagementRepository;
+        this.enabled = likeShards > 0;
+        this.interval = interval;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            compactor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("like-shards-compactor").factory());
+            compactor.scheduleWithFixedDelay(this::compact, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void compact() {
+        try {
+            int compacted;
+            do {
+                compacted = postManagementRepository.compactLikeShards(batchSize);
+            } while (compacted == batchSize);
+        } catch (RuntimeException e) {
+            log.error("The like shards were not compacted, they will be retried", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.alex.blog.counter;
+
+import com.alex.blog.event.LikesCountChangedEvent;
+import com.alex.blog.event.PostDeletedEvent;
+import com.alex.blog.repository.PostManagementRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Likes accumulated per post in striped adders and added to {@code posts.likes_count} in one batch every interval,
+ * so the likes of a popular post don't queue up on its row lock.
+ * An adder is never reset: a flush writes the difference between its sum and the already flushed likes,
+ * so likes added during a flush or lost by a failed flush are written by the next one.
+ * The pending likes are flushed when the application shuts down.
+ */
+@Component
+@Slf4j
+public class LikesWriteBehindBuffer {
+
+    private static final int SHUTDOWN_FLUSH_ATTEMPTS = 3;
+
+    private final PostManagementRepository postManagementRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final Duration flushInterval;
+
+    private final Map<Long, PendingLikes> pendingLikes = new ConcurrentHashMap<>();
+    private final List<Map.Entry<Long, PendingLikes>> retiredLikes = new ArrayList<>();
+    private ScheduledExecutorService flusher;
+
+    public LikesWriteBehindBuffer(PostManagementRepository postManagementRepository,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${blog.likes.write-behind.enabled:false}") boolean enabled,
+                                  @Value("${blog.likes.write-behind.flush-interval:500ms}") Duration flushInterval) {
+        this.postManagementRepository = postManagementRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.flushInterval = flushInterval;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("likes-flusher").factory());
+            flusher.scheduleWithFixedDelay(this::flushQuietly,
+                    flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public Optional<Long> increment(Long postId) {
+        return postManagementRepository.findLikesCount(postId).map(persisted -> {
+            PendingLikes likes = pendingLikes.computeIfAbsent(postId, id -> new PendingLikes());
+            likes.added.increment();
+            Long likesCount = persisted + likes.unflushed();
+            eventPublisher.publishEvent(new LikesCountChangedEvent(postId, likesCount));
+            return likesCount;
+        });
+    }
+
+    public synchronized void flush() {
+        List<Map.Entry<Long, PendingLikes>> counters = new ArrayList<>(retiredLikes);
+        counters.addAll(pendingLikes.entrySet());
+
+        Map<Long, Long> likesDeltas = new HashMap<>();
+        List<Long> addedSums = new ArrayList<>(counters.size());
+        counters.forEach(entry -> {
+            PendingLikes likes = entry.getValue();
+            long added = likes.added.sum();
+            if (added != likes.flushed) {
+                likesDeltas.merge(entry.getKey(), added - likes.flushed, Long::sum);
+            }
+            addedSums.add(added);
+        });
+        if (!likesDeltas.isEmpty()) {
+            postManagementRepository.addLikesCounts(likesDeltas);
+        }
+        for (int i = 0; i < counters.size(); i++) {
+            counters.get(i).getValue().flushed = addedSums.get(i);
+        }
+
+        // a retired adder is flushed once more to catch a like that has found it in the map just before the removal
+        retiredLikes.clear();
+        counters.forEach(entry -> {
+            if (!likesDeltas.containsKey(entry.getKey()) && pendingLikes.remove(entry.getKey(), entry.getValue())) {
+                retiredLikes.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostDeleted(PostDeletedEvent event) {
+        pendingLikes.remove(event.postId());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        if (!flusher.awaitTermination(flushInterval.toMillis() * 2, TimeUnit.MILLISECONDS)) {
+            log.warn("The likes flusher has not stopped in time");
+        }
+        for (int attempt = 1; attempt <= SHUTDOWN_FLUSH_ATTEMPTS; attempt++) {
+            try {
+                flush();
+                log.info("The pending likes were flushed");
+                return;
+            } catch (RuntimeException e) {
+                log.warn("The pending likes were not flushed, attempt {} of {}", attempt, SHUTDOWN_FLUSH_ATTEMPTS, e);
+                Thread.sleep(flushInterval.toMillis());
+            }
+        }
+        Map<Long, Long> lostLikes = new HashMap<>();
+        pendingLikes.forEach((postId, likes) -> lostLikes.merge(postId, likes.unflushed(), Long::sum));
+        retiredLikes.forEach(entry -> lostLikes.merge(entry.getKey(), entry.getValue().unflushed(), Long::sum));
+        log.error("The pending likes were lost, post id -> likes: {}", lostLikes);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("The pending likes were not flushed, they will be retried", e);
+        }
+    }
+
+    private static class PendingLikes {
+        private final LongAdder added = new LongAdder();
+        private volatile long flushed;
+
+        private long unflushed() {
+            return added.sum() - flushed;
+        }
+    }
+}
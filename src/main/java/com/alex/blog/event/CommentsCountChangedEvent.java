@@ -0,0 +1,4 @@
+package com.alex.blog.event;
+
+public record CommentsCountChangedEvent(Long postId, Long commentsCount) {
+}
@@ -0,0 +1,6 @@
+package com.alex.blog.event;
+
+import java.util.List;
+
+public record PostCreatedEvent(Long postId, List<String> tags) {
+}
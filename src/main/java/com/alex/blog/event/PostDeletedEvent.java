@@ -0,0 +1,6 @@
+package com.alex.blog.event;
+
+import java.util.List;
+
+public record PostDeletedEvent(Long postId, List<String> tags) {
+}
@@ -0,0 +1,6 @@
+package com.alex.blog.event;
+
+import java.util.List;
+
+public record PostUpdatedEvent(Long postId, List<String> oldTags, List<String> newTags) {
+}
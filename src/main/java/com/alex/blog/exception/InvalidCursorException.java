@@ -0,0 +1,10 @@
+package com.alex.blog.exception;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import static org.springframework.http.ResponseEntity.status;
 
@@ -26,6 +27,12 @@ public class GlobalRestControllerAdvice {
     }
 
 
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<String> handleArgumentTypeMismatchException(MethodArgumentTypeMismatchException ex) {
+        return status(HttpStatus.BAD_REQUEST)
+                .body(ex.getMessage());
+    }
+
     @ExceptionHandler(EntityCreationException.class)
     public ResponseEntity<String> handleEntityCreationException(EntityCreationException ex) {
         return status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -38,6 +45,12 @@ public class GlobalRestControllerAdvice {
                 .body(ex.getMessage());
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursorException(InvalidCursorException ex) {
+        return status(HttpStatus.BAD_REQUEST)
+                .body(ex.getMessage());
+    }
+
     @ExceptionHandler(ImageNotFoundException.class)
     public ResponseEntity<String> handleImageNotFoundException(ImageNotFoundException ex) {
         return status(HttpStatus.NOT_FOUND)
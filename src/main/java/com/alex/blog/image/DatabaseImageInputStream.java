@@ -0,0 +1,97 @@
+package com.alex.blog.image;
+
+import com.alex.blog.repository.ImageRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * Reads the image of {@code posts.image} in slices, so the bytes skipped for a Range request are not selected at all
+ * and a download holds one slice in the heap at a time. Every slice is selected for the hash of the opened image,
+ * an image replaced during the download fails the stream instead of mixing the bytes of two images.
+ */
+class DatabaseImageInputStream extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ImageRepository imageRepository;
+    private final Long postId;
+    private final String hash;
+    private final long size;
+    private final int sliceSize;
+
+    // offset of the next slice in the image
+    private long offset;
+    private byte[] slice = EMPTY;
+    private int slicePosition;
+
+    DatabaseImageInputStream(ImageRepository imageRepository, Long postId, String hash, long size, int sliceSize) {
+        this.imageRepository = imageRepository;
+        this.postId = postId;
+        this.hash = hash;
+        this.size = size;
+        this.sliceSize = sliceSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return slice[slicePosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int read = Math.min(len, slice.length - slicePosition);
+        System.arraycopy(slice, slicePosition, b, off, read);
+        slicePosition += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        int buffered = slice.length - slicePosition;
+        if (n <= buffered) {
+            slicePosition += (int) n;
+            return n;
+        }
+        long skippedInDatabase = Math.min(n - buffered, size - offset);
+        offset += skippedInDatabase;
+        slice = EMPTY;
+        slicePosition = 0;
+        return buffered + skippedInDatabase;
+    }
+
+    @Override
+    public int available() {
+        return slice.length - slicePosition;
+    }
+
+    private boolean fill() throws IOException {
+        if (slicePosition < slice.length) {
+            return true;
+        }
+        if (offset >= size) {
+            return false;
+        }
+        int length = (int) Math.min(sliceSize, size - offset);
+        slice = imageRepository.findImageSlice(postId, hash, offset, length)
+                .filter(bytes -> bytes.length > 0)
+                .orElseThrow(() -> new IOException("The image of post " + postId + " was changed or deleted during the download"));
+        slicePosition = 0;
+        offset += slice.length;
+        return true;
+    }
+}
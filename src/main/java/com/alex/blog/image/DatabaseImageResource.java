@@ -0,0 +1,55 @@
+package com.alex.blog.image;
+
+import com.alex.blog.repository.ImageRepository;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The image in {@code posts.image}, selected only when the response body is written,
+ * so a not modified response doesn't read it and a partial one reads only the requested range.
+ * Its length is selected once per resource, the response asks for it several times.
+ */
+class DatabaseImageResource extends AbstractResource {
+
+    private final ImageRepository imageRepository;
+    private final Long postId;
+    private final String hash;
+    private final int sliceSize;
+    private Long size;
+
+    DatabaseImageResource(ImageRepository imageRepository, Long postId, String hash, int sliceSize) {
+        this.imageRepository = imageRepository;
+        this.postId = postId;
+        this.hash = hash;
+        this.sliceSize = sliceSize;
+    }
+
+    @Override
+    public boolean exists() {
+        if (size == null) {
+            imageRepository.findImageSize(postId).ifPresent(found -> size = found);
+        }
+        return size != null;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        if (!exists()) {
+            throw new FileNotFoundException(getDescription() + " does not exist");
+        }
+        return size;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new DatabaseImageInputStream(imageRepository, postId, hash, contentLength(), sliceSize);
+    }
+
+    @Override
+    public String getDescription() {
+        return "image of post " + postId;
+    }
+}
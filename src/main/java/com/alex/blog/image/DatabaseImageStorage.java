@@ -0,0 +1,90 @@
+package com.alex.blog.image;
+
+import com.alex.blog.exception.ImageSavingException;
+import com.alex.blog.model.ImageMetadata;
+import com.alex.blog.repository.ImageRepository;
+import com.alex.blog.service.MessageKey;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.MessageSource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * The images in the {@code images.image} column once per content, read in slices of {@code blog.images.database.slice-size}.
+ * An {@code images} row without content (of the file system storage) gets the content of the next upload of the image.
+ * The images saved in {@code posts.image} before the deduplication are served from there until the post gets a new one.
+ * The variants are in {@code post_image_variants}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "blog.images", name = "storage", havingValue = "database", matchIfMissing = true)
+public class DatabaseImageStorage implements ImageStorage {
+
+    private final ImageRepository imageRepository;
+    private final MessageSource messageSource;
+    private final int sliceSize;
+
+    public DatabaseImageStorage(ImageRepository imageRepository,
+                                MessageSource messageSource,
+                                @Value("${blog.images.database.slice-size:256KB}") DataSize sliceSize) {
+        this.imageRepository = imageRepository;
+        this.messageSource = messageSource;
+        this.sliceSize = Math.toIntExact(sliceSize.toBytes());
+    }
+
+    @Override
+    public Optional<String> save(Long postId, InputStreamSource image, long size) {
+        try {
+            String hash;
+            // the first read only hashes, an image already in the database is not sent to it again
+            try (Sha256InputStream hashedImage = new Sha256InputStream(image.getInputStream())) {
+                hashedImage.transferTo(OutputStream.nullOutputStream());
+                hash = hashedImage.hash();
+            }
+            if (!imageRepository.acquireStoredImage(hash)) {
+                boolean exists = imageRepository.existsImage(hash);
+                try (InputStream content = image.getInputStream()) {
+                    boolean stored = exists
+                            ? imageRepository.storeMissingImage(hash, content, size)
+                            : imageRepository.insertImage(hash, content, size);
+                    // stored by a concurrent upload of the same image in the meantime
+                    if (!stored) {
+                        imageRepository.acquireImage(hash);
+                    }
+                }
+            }
+            return imageRepository.referenceImage(postId, hash, null) ? Optional.of(hash) : Optional.empty();
+        } catch (IOException e) {
+            throw new ImageSavingException(messageSource.getMessage(MessageKey.IMAGE_SAVING_EX, new Object[]{postId}, Locale.ENGLISH), e);
+        }
+    }
+
+    @Override
+    public void delete(String hash) {
+        // the content is deleted with the images row
+    }
+
+    @Override
+    public Resource open(Long postId, ImageMetadata metadata) {
+        return new DatabaseImageResource(imageRepository, postId, metadata.hash(), sliceSize);
+    }
+
+    @Override
+    public void saveVariant(Long postId, ImageMetadata original, ImageVariant variant, byte[] image) {
+        imageRepository.saveImageVariant(postId, variant.key(), original.hash(), image);
+    }
+
+    @Override
+    public Optional<Resource> openVariant(Long postId, ImageMetadata original, ImageVariant variant) {
+        return imageRepository.findImageVariant(postId, variant.key(), original.hash()).map(ByteArrayResource::new);
+    }
+}
@@ -0,0 +1,242 @@
+package com.alex.blog.image;
+
+import com.alex.blog.exception.ImageSavingException;
+import com.alex.blog.model.ImageMetadata;
+import com.alex.blog.repository.ImageRepository;
+import com.alex.blog.repository.PostManagementRepository;
+import com.alex.blog.service.MessageKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.MessageSource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * The images in files under {@code blog.images.filesystem.root} named by the SHA-256 of their content
+ * ({@code ab/cd/abcd...}), the posts keep only the relative path. Equal images of several posts share one file,
+ * counted in {@code images}, it is deleted by the orphan image sweeper after the last of them. The file is sent to the client as a {@link FileSystemResource},
+ * streamed in small chunks without reading the image into the heap, a Range request positions the file channel
+ * at the start of the range instead of reading up to it.
+ * The images saved in {@code posts.image} before are served from there until {@link #migrateDatabaseImages} moves them.
+ * The variants of an image file are saved next to it as {@code ab/cd/abcd...-thumb}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "blog.images", name = "storage", havingValue = "filesystem")
+@Slf4j
+public class FileSystemImageStorage implements ImageStorage {
+
+    private final ImageRepository imageRepository;
+    private final PostManagementRepository postManagementRepository;
+    private final MessageSource messageSource;
+    private final TransactionOperations transactionOperations;
+    private final Path root;
+    private final int sliceSize;
+
+    public FileSystemImageStorage(ImageRepository imageRepository,
+                                  PostManagementRepository postManagementRepository,
+                                  MessageSource messageSource,
+                                  TransactionOperations transactionOperations,
+                                  @Value("${blog.images.filesystem.root:./images}") Path root,
+                                  @Value("${blog.images.database.slice-size:256KB}") DataSize sliceSize) {
+        this.imageRepository = imageRepository;
+        this.postManagementRepository = postManagementRepository;
+        this.messageSource = messageSource;
+        this.transactionOperations = transactionOperations;
+        this.root = root.toAbsolutePath();
+        this.sliceSize = Math.toIntExact(sliceSize.toBytes());
+    }
+
+    @Override
+    public Optional<String> save(Long postId, InputStreamSource image, long size) {
+        return write(postId, image, hash -> imageRepository.referenceImage(postId, hash, imagePath(hash)));
+    }
+
+    @Override
+    public void delete(String hash) {
+        Path file = root.resolve(imagePath(hash));
+        try {
+            for (ImageVariant variant : ImageVariant.values()) {
+                if (variant != ImageVariant.ORIGINAL) {
+                    Files.deleteIfExists(root.resolve(imagePath(hash) + "-" + variant.key()));
+                }
+            }
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // the images row is kept by the rollback, the deletion is retried by the next sweep
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Resource open(Long postId, ImageMetadata metadata) {
+        if (metadata.path() == null) {
+            return new DatabaseImageResource(imageRepository, postId, metadata.hash(), sliceSize);
+        }
+        return new FileSystemResource(root.resolve(metadata.path()));
+    }
+
+    @Override
+    public void saveVariant(Long postId, ImageMetadata original, ImageVariant variant, byte[] image) {
+        if (original.path() == null) {
+            imageRepository.saveImageVariant(postId, variant.key(), original.hash(), image);
+            return;
+        }
+        Path upload = null;
+        try {
+            upload = Files.createTempFile(root, "variant-", ".tmp");
+            Files.write(upload, image);
+            Files.move(upload, variantFile(original, variant), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ImageSavingException(messageSource.getMessage(MessageKey.IMAGE_SAVING_EX, new Object[]{postId}, Locale.ENGLISH), e);
+        } finally {
+            deleteQuietly(upload);
+        }
+    }
+
+    @Override
+    public Optional<Resource> openVariant(Long postId, ImageMetadata original, ImageVariant variant) {
+        if (original.path() == null) {
+            return imageRepository.findImageVariant(postId, variant.key(), original.hash()).map(ByteArrayResource::new);
+        }
+        Path file = variantFile(original, variant);
+        return Files.isRegularFile(file) ? Optional.of(new FileSystemResource(file)) : Optional.empty();
+    }
+
+    /**
+     * Moves the images of {@code posts.image} to files, one image in memory at a time.
+     *
+     * @return the number of moved images
+     */
+    public int migrateDatabaseImages(int batchSize) {
+        int moved = 0;
+        List<Long> postIds = imageRepository.findPostIdsWithDatabaseImages(0L, batchSize);
+        while (!postIds.isEmpty()) {
+            for (Long postId : postIds) {
+                Optional<byte[]> image = postManagementRepository.getImage(postId);
+                if (image.isEmpty()) {
+                    continue;
+                }
+                // the reference is counted in the transaction of the move
+                Optional<String> hash = transactionOperations.execute(status -> write(postId, new ByteArrayResource(image.get()),
+                        movedHash -> {
+                            if (imageRepository.moveDatabaseImageToPath(postId, imagePath(movedHash), movedHash)) {
+                                return true;
+                            }
+                            status.setRollbackOnly();
+                            return false;
+                        }));
+                if (hash != null && hash.isPresent()) {
+                    moved++;
+                }
+            }
+            log.info("{} images were moved to {}", moved, root);
+            postIds = imageRepository.findPostIdsWithDatabaseImages(postIds.getLast(), batchSize);
+        }
+        return moved;
+    }
+
+    /**
+     * Writes the image to a temporary file, counts one more reference to its hash, records the reference
+     * and moves the file in place when it is not there yet. Within a transaction the file is moved after the commit,
+     * a rolled back upload leaves no file behind the sweeper, which sees only the {@code images} rows.
+     * The {@code images} row stays locked until the commit, so the sweeper can't delete the file in between.
+     *
+     * @return the SHA-256 of the written image, empty when the reference was not recorded
+     */
+    private Optional<String> write(Long postId, InputStreamSource image, Predicate<String> reference) {
+        Path upload = null;
+        try {
+            Files.createDirectories(root);
+            upload = Files.createTempFile(root, "upload-", ".tmp");
+            String hash;
+            try (Sha256InputStream hashedImage = new Sha256InputStream(image.getInputStream())) {
+                Files.copy(hashedImage, upload, StandardCopyOption.REPLACE_EXISTING);
+                hash = hashedImage.hash();
+            }
+
+            // inserted by a concurrent upload of the same image in the meantime
+            if (!imageRepository.acquireImage(hash) && !imageRepository.insertImage(hash, null, 0)) {
+                imageRepository.acquireImage(hash);
+            }
+            if (!reference.test(hash)) {
+                return Optional.empty();
+            }
+            Path file = root.resolve(imagePath(hash));
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                Path hashedUpload = upload;
+                upload = null;
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        moveAfterCompletion(hashedUpload, file, status == STATUS_COMMITTED);
+                    }
+                });
+            } else {
+                moveInPlace(upload, file);
+            }
+            return Optional.of(hash);
+        } catch (IOException e) {
+            throw new ImageSavingException(messageSource.getMessage(MessageKey.IMAGE_SAVING_EX, new Object[]{postId}, Locale.ENGLISH), e);
+        } finally {
+            deleteQuietly(upload);
+        }
+    }
+
+    private void moveAfterCompletion(Path upload, Path file, boolean committed) {
+        try {
+            if (committed) {
+                moveInPlace(upload, file);
+            }
+        } catch (IOException e) {
+            log.error("The image file {} was not moved to {}", upload, file, e);
+        } finally {
+            deleteQuietly(upload);
+        }
+    }
+
+    private void moveInPlace(Path upload, Path file) throws IOException {
+        if (Files.notExists(file)) {
+            Files.createDirectories(file.getParent());
+            // a concurrent upload of the same image writes the same content
+            Files.move(upload, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // the variants of an image file are shared by its posts too
+    private Path variantFile(ImageMetadata original, ImageVariant variant) {
+        return root.resolve(original.path() + "-" + variant.key());
+    }
+
+    private static String imagePath(String hash) {
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+
+    private void deleteQuietly(Path upload) {
+        if (upload == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(upload);
+        } catch (IOException e) {
+            log.warn("The temporary file {} was not deleted", upload, e);
+        }
+    }
+}
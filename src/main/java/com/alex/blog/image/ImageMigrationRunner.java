@@ -0,0 +1,44 @@
+package com.alex.blog.image;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code java -jar my-blog-back-app.jar --blog.images.storage=filesystem --migrate-images} moves the images
+ * of {@code posts.image} to the file system storage and exits. The posts stay readable during the migration.
+ */
+@Component
+@ConditionalOnProperty(prefix = "blog.images", name = "storage", havingValue = "filesystem")
+@Slf4j
+public class ImageMigrationRunner implements ApplicationRunner {
+
+    private static final String MIGRATE_IMAGES_OPTION = "migrate-images";
+
+    private final FileSystemImageStorage fileSystemImageStorage;
+    private final ConfigurableApplicationContext applicationContext;
+    private final int batchSize;
+
+    public ImageMigrationRunner(FileSystemImageStorage fileSystemImageStorage,
+                                ConfigurableApplicationContext applicationContext,
+                                @Value("${blog.images.filesystem.migration-batch-size:100}") int batchSize) {
+        this.fileSystemImageStorage = fileSystemImageStorage;
+        this.applicationContext = applicationContext;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(MIGRATE_IMAGES_OPTION)) {
+            return;
+        }
+        int moved = fileSystemImageStorage.migrateDatabaseImages(batchSize);
+        log.info("The image migration has finished, {} images were moved", moved);
+        System.exit(SpringApplication.exit(applicationContext));
+    }
+}
@@ -0,0 +1,38 @@
+package com.alex.blog.image;
+
+import com.alex.blog.model.ImageMetadata;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+
+import java.util.Optional;
+
+/**
+ * Storage of the post images, chosen by {@code blog.images.storage}.
+ */
+public interface ImageStorage {
+
+    /**
+     * Reads the image from the stream in chunks, so an upload takes a bounded amount of heap whatever its size.
+     * An image already stored for another post is not stored again, the post is counted as one more reference to it.
+     *
+     * @return the SHA-256 of the image, empty when there is no such post
+     */
+    Optional<String> save(Long postId, InputStreamSource image, long size);
+
+    /**
+     * Deletes the content of an image no post refers to any more, called while its {@code images} row is locked.
+     */
+    void delete(String hash);
+
+    /**
+     * @return the image of the metadata, read when its content is requested
+     */
+    Resource open(Long postId, ImageMetadata metadata);
+
+    void saveVariant(Long postId, ImageMetadata original, ImageVariant variant, byte[] image);
+
+    /**
+     * @return empty until the variant of this original is saved
+     */
+    Optional<Resource> openVariant(Long postId, ImageMetadata original, ImageVariant variant);
+}
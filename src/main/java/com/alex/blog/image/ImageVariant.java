@@ -0,0 +1,20 @@
+package com.alex.blog.image;
+
+import java.util.Locale;
+
+/**
+ * The sizes of a post image, {@code ?size=thumb} of {@code GET /api/posts/{id}/image}.
+ */
+public enum ImageVariant {
+    ORIGINAL,
+    THUMB,
+    MEDIUM;
+
+    public String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static ImageVariant fromKey(String key) {
+        return valueOf(key.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,13 @@
+package com.alex.blog.image;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ImageVariantConverter implements Converter<String, ImageVariant> {
+
+    @Override
+    public ImageVariant convert(String source) {
+        return ImageVariant.fromKey(source);
+    }
+}
@@ -0,0 +1,181 @@
+package com.alex.blog.image;
+
+import com.alex.blog.event.PostImageUpdatedEvent;
+import com.alex.blog.model.ImageMetadata;
+import com.alex.blog.repository.ImageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizes an uploaded image to the {@link ImageVariant} widths with {@link ImageIO} on a bounded pool after the upload
+ * has been committed. The variants are encoded as jpeg and saved by the {@link ImageStorage} next to the original,
+ * which is served instead of them until they are ready. A job rejected by the full queue or failed is retried when
+ * the missing variant is requested.
+ */
+@Component
+@Slf4j
+public class ImageVariantGenerator {
+
+    public static final String CONTENT_TYPE = "image/jpeg";
+
+    private final ImageRepository imageRepository;
+    private final ImageStorage imageStorage;
+    private final boolean enabled;
+    private final int threads;
+    private final int queueCapacity;
+    private final Map<ImageVariant, Integer> widths = new EnumMap<>(ImageVariant.class);
+
+    private final Set<Long> queuedPostIds = ConcurrentHashMap.newKeySet();
+    private ThreadPoolExecutor executor;
+
+    public ImageVariantGenerator(ImageRepository imageRepository,
+                                 ImageStorage imageStorage,
+                                 @Value("${blog.images.variants.enabled:true}") boolean enabled,
+                                 @Value("${blog.images.variants.threads:2}") int threads,
+                                 @Value("${blog.images.variants.queue-capacity:100}") int queueCapacity,
+                                 @Value("${blog.images.variants.thumb-width:320}") int thumbWidth,
+                                 @Value("${blog.images.variants.medium-width:1024}") int mediumWidth) {
+        this.imageRepository = imageRepository;
+        this.imageStorage = imageStorage;
+        this.enabled = enabled;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        widths.put(ImageVariant.THUMB, thumbWidth);
+        widths.put(ImageVariant.MEDIUM, mediumWidth);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    Thread.ofPlatform().name("image-variants-", 0).factory());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostImageUpdated(PostImageUpdatedEvent event) {
+        enqueue(event.postId());
+    }
+
+    public void enqueue(Long postId) {
+        if (executor == null || !queuedPostIds.add(postId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(postId);
+                } catch (RuntimeException e) {
+                    log.error("The variants of the image of post {} were not generated", postId, e);
+                } finally {
+                    queuedPostIds.remove(postId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queuedPostIds.remove(postId);
+            log.warn("The variants of the image of post {} were not queued, the queue is full", postId);
+        }
+    }
+
+    public void generate(Long postId) {
+        Optional<ImageMetadata> metadata = imageRepository.findImageMetadata(postId);
+        // the variants are saved for the hash of the original, an image saved before the hashes has none
+        if (metadata.isEmpty() || metadata.get().hash() == null) {
+            return;
+        }
+        BufferedImage original;
+        try (InputStream image = imageStorage.open(postId, metadata.get()).getInputStream()) {
+            original = read(image, Collections.max(widths.values()));
+        } catch (IOException e) {
+            log.warn("The image of post {} was not read for its variants", postId, e);
+            return;
+        }
+        if (original == null) {
+            log.warn("The image of post {} is not in a format readable by ImageIO, it has no variants", postId);
+            return;
+        }
+        widths.forEach((variant, width) -> imageStorage.saveVariant(postId, metadata.get(), variant, encode(resize(original, width))));
+        log.debug("The variants of the image of post {} were generated", postId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static BufferedImage read(InputStream image, int maxWidth) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(image)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // only every n-th pixel is decoded, so a large image is never decoded at its full size
+                int subsampling = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / (maxWidth * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage resize(BufferedImage original, int width) {
+        int targetWidth = Math.min(width, original.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) original.getHeight() * targetWidth / original.getWidth()));
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // jpeg has no alpha channel, the transparent pixels become white
+            graphics.drawImage(original, 0, 0, targetWidth, targetHeight, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encode(BufferedImage image) {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpg", encoded);
+        } catch (IOException e) {
+            throw new IllegalStateException("The jpeg writer has failed on an in-memory stream", e);
+        }
+        return encoded.toByteArray();
+    }
+}
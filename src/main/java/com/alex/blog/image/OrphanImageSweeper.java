@@ -0,0 +1,96 @@
+package com.alex.blog.image;
+
+import com.alex.blog.repository.ImageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes the images no post refers to any more every interval. An image is deleted in the transaction
+ * that deletes its {@code images} row, so an upload of the same image either counts itself before and keeps it
+ * or waits for the commit and stores it again.
+ */
+@Component
+@Slf4j
+public class OrphanImageSweeper {
+
+    private final ImageRepository imageRepository;
+    private final ImageStorage imageStorage;
+    private final TransactionOperations transactionOperations;
+    private final Duration interval;
+    private final int batchSize;
+    private ScheduledExecutorService sweeper;
+
+    public OrphanImageSweeper(ImageRepository imageRepository,
+                              ImageStorage imageStorage,
+                              TransactionOperations transactionOperations,
+                              @Value("${blog.images.sweeper.interval:10m}") Duration interval,
+                              @Value("${blog.images.sweeper.batch-size:100}") int batchSize) {
+        this.imageRepository = imageRepository;
+        this.imageStorage = imageStorage;
+        this.transactionOperations = transactionOperations;
+        this.interval = interval;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (interval.isPositive()) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("orphan-image-sweeper").factory());
+            sweeper.scheduleWithFixedDelay(this::sweepQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the number of deleted images
+     */
+    public int sweep() {
+        int swept = 0;
+        List<String> hashes;
+        do {
+            hashes = imageRepository.findOrphanImageHashes(batchSize);
+            for (String hash : hashes) {
+                // counted again by an upload since it was found
+                Boolean deleted = transactionOperations.execute(status -> {
+                    if (!imageRepository.deleteOrphanImage(hash)) {
+                        return false;
+                    }
+                    imageStorage.delete(hash);
+                    return true;
+                });
+                if (Boolean.TRUE.equals(deleted)) {
+                    swept++;
+                }
+            }
+        } while (hashes.size() == batchSize);
+        return swept;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            int swept = sweep();
+            if (swept > 0) {
+                log.info("{} orphan images were deleted", swept);
+            }
+        } catch (RuntimeException e) {
+            log.error("The orphan images were not deleted, they will be retried", e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.alex.blog.image;
+
+import com.alex.blog.model.ImageMetadata;
+import org.springframework.core.io.Resource;
+
+/**
+ * @param content    read only when the response body is written
+ * @param substitute the original served while the requested variant is generated, not to be cached as the variant
+ */
+public record PostImage(Resource content, ImageMetadata metadata, boolean substitute) {
+}
@@ -0,0 +1,32 @@
+package com.alex.blog.image;
+
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Computes the SHA-256 of the image read through it.
+ */
+class Sha256InputStream extends DigestInputStream {
+
+    Sha256InputStream(InputStream image) {
+        super(image, newDigest());
+    }
+
+    /**
+     * @return the hex SHA-256 of the bytes read so far
+     */
+    String hash() {
+        return HexFormat.of().formatHex(getMessageDigest().digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the JVM", e);
+        }
+    }
+}
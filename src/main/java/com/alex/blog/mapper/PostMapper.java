@@ -14,8 +14,10 @@ import static org.mapstruct.NullValuePropertyMappingStrategy.*;
 public interface PostMapper {
     @Mapping(target = "likesCount", constant = "0L")
     @Mapping(target = "commentsCount", constant = "0L")
+    @Mapping(target = "textTruncated", ignore = true)
     Post toPost(PostCreateDto postCreateDto);
     @BeanMapping( nullValuePropertyMappingStrategy = IGNORE)
+    @Mapping(target = "textTruncated", ignore = true)
     void updatePost(PostUpdateDto postUpdateDto, @MappingTarget Post post);
     PostReadDto toPostReadDto(Post post);
 
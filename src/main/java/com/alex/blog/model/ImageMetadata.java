@@ -0,0 +1,13 @@
+package com.alex.blog.model;
+
+import java.time.Instant;
+
+/**
+ * The image columns of a post without the image itself. The hash, content type and update time
+ * are null for the images saved before they were recorded.
+ *
+ * @param path the image file of the file system storage, null when the image is in {@code posts.image}
+ * @param hash the SHA-256 of the image
+ */
+public record ImageMetadata(String path, String hash, String contentType, Instant updatedAt) {
+}
@@ -21,6 +21,7 @@ public class Post {
     private byte[] image;
     private Long likesCount;
     private Long commentsCount;
+    private boolean textTruncated;
 }
 
 
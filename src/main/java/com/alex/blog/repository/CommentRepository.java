@@ -8,10 +8,12 @@ import java.util.Optional;
 
 public interface CommentRepository {
     Optional<Comment> findById(Long id);
-    Comment save(Comment comment);
-    void delete(Long id);
-    Comment update(Comment comment);
+    Optional<Comment> save(Comment comment);
+    List<Comment> saveAll(List<Comment> comments);
+    boolean delete(Long postId, Long id);
+    Optional<Comment> update(Comment comment);
     void deleteByPostId(Long postId);
     List<Comment> findCommentsByPostId(Long postId);
+    List<Comment> findCommentsByPostIdAfter(Long postId, Long afterId, int limit);
     
 }
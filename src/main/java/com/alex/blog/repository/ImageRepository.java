@@ -0,0 +1,27 @@
+package com.alex.blog.repository;
+
+import com.alex.blog.model.ImageMetadata;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+
+public interface ImageRepository {
+    boolean acquireImage(String hash);
+    boolean acquireStoredImage(String hash);
+    boolean existsImage(String hash);
+    boolean insertImage(String hash, InputStream image, long size);
+    boolean storeMissingImage(String hash, InputStream image, long size);
+    boolean referenceImage(Long postId, String hash, String imagePath);
+    void releaseImage(Long postId);
+    List<String> findOrphanImageHashes(int limit);
+    boolean deleteOrphanImage(String hash);
+    boolean updateImageMetadata(Long postId, String hash, String contentType);
+    Optional<ImageMetadata> findImageMetadata(Long postId);
+    Optional<Long> findImageSize(Long postId);
+    Optional<byte[]> findImageSlice(Long postId, String hash, long offset, int length);
+    void saveImageVariant(Long postId, String variant, String sourceHash, byte[] image);
+    Optional<byte[]> findImageVariant(Long postId, String variant, String sourceHash);
+    List<Long> findPostIdsWithDatabaseImages(Long afterPostId, int limit);
+    boolean moveDatabaseImageToPath(Long postId, String imagePath, String hash);
+}
@@ -2,15 +2,18 @@ package com.alex.blog.repository;
 
 import com.alex.blog.model.Post;
 
+import java.util.Map;
 import java.util.Optional;
 
 public interface PostManagementRepository {
-    Post save(Post post);
-    void delete(Long id);
+    Optional<Post> save(Post post);
+    boolean delete(Long id);
     Post update(Post post);
-    Long incrementLikesCount(Long postId);
-    boolean updateImage(Long postId, byte[] image);
-    Long incrementCommentsCount(Long postId,Long incValue);
+    Optional<Long> incrementLikesCount(Long postId);
+    Optional<Long> findLikesCount(Long postId);
+    void addLikesCounts(Map<Long, Long> likesDeltas);
+    int compactLikeShards(int limit);
+    Optional<Long> incrementCommentsCount(Long postId,Long incValue);
     boolean existsById(Long id);
     boolean existsByTitle(String title);
     Optional<byte[]> getImage(Long postId);
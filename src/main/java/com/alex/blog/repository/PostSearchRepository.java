@@ -2,12 +2,18 @@ package com.alex.blog.repository;
 
 import com.alex.blog.model.Post;
 import com.alex.blog.search.Criteria;
+import com.alex.blog.search.Cursor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface PostSearchRepository {
     Page<Post> findPostsByCriteriaAndPageable(Criteria criteria, Pageable pageable);
+    Slice<Post> findSliceByCriteriaAndPageable(Criteria criteria, Pageable pageable);
+    Slice<Post> findPostsByCriteriaAndCursor(Criteria criteria, Cursor cursor, int limit);
     Optional<Post> findPostById(Long postId);
+    void exportPostsByCriteria(Criteria criteria, Consumer<Post> consumer);
 }
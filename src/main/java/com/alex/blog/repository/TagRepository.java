@@ -0,0 +1,9 @@
+package com.alex.blog.repository;
+
+import com.alex.blog.api.dto.TagSuggestionDto;
+
+import java.util.List;
+
+public interface TagRepository {
+    List<TagSuggestionDto> findMostUsedByPrefix(String prefix, int limit);
+}
@@ -0,0 +1,47 @@
+package com.alex.blog.repository.dialect;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * H2 has no tsvector, so every word of the query has to be found in the title or in the text
+ * and the rank is the number of matches where a title match weighs twice as much.
+ */
+public class H2SqlDialect implements SqlDialect {
+
+    @Override
+    public String fullTextCondition(String query, MapSqlParameterSource params) {
+        List<String> terms = terms(query);
+        IntStream.range(0, terms.size())
+                .forEach(i -> params.addValue("ftTerm" + i, "%" + terms.get(i) + "%"));
+
+        return IntStream.range(0, terms.size())
+                .mapToObj(i -> "(LOWER(p.title) LIKE :ftTerm%1$d OR LOWER(CAST(p.text AS VARCHAR)) LIKE :ftTerm%1$d)".formatted(i))
+                .collect(Collectors.joining(" AND ", " (", ")"));
+    }
+
+    @Override
+    public String fullTextRank(String query) {
+        return IntStream.range(0, terms(query).size())
+                .mapToObj(i -> ("CASE WHEN LOWER(p.title) LIKE :ftTerm%1$d THEN 2 ELSE 0 END" +
+                        " + CASE WHEN LOWER(CAST(p.text AS VARCHAR)) LIKE :ftTerm%1$d THEN 1 ELSE 0 END").formatted(i))
+                .collect(Collectors.joining(" + ", "(", ")"));
+    }
+
+    @Override
+    public String tagsArray() {
+        return "(SELECT ARRAY_AGG(pt.tag_id) FROM posts_tags AS pt WHERE pt.post_id = p.id)";
+    }
+
+    private List<String> terms(String query) {
+        return Arrays.stream(query.toLowerCase(Locale.ROOT).split(" "))
+                .filter(Predicate.not(String::isEmpty))
+                .toList();
+    }
+}
@@ -0,0 +1,22 @@
+package com.alex.blog.repository.dialect;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+public class PostgresSqlDialect implements SqlDialect {
+
+    @Override
+    public String fullTextCondition(String query, MapSqlParameterSource params) {
+        params.addValue("ftQuery", query);
+        return " p.search_vector @@ websearch_to_tsquery('simple', :ftQuery)";
+    }
+
+    @Override
+    public String fullTextRank(String query) {
+        return "ts_rank(p.search_vector, websearch_to_tsquery('simple', :ftQuery))";
+    }
+
+    @Override
+    public String tagsArray() {
+        return "ARRAY(SELECT pt.tag_id FROM posts_tags AS pt WHERE pt.post_id = p.id)";
+    }
+}
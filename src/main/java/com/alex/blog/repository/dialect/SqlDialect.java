@@ -0,0 +1,12 @@
+package com.alex.blog.repository.dialect;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+public interface SqlDialect {
+
+    String fullTextCondition(String query, MapSqlParameterSource params);
+
+    String fullTextRank(String query);
+
+    String tagsArray();
+}
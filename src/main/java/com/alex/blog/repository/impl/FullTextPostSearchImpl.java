@@ -0,0 +1,49 @@
+package com.alex.blog.repository.impl;
+
+import com.alex.blog.cache.SearchCountCache;
+import com.alex.blog.repository.dialect.SqlDialect;
+import com.alex.blog.search.Criteria;
+import com.alex.blog.search.index.TagBitmapIndex;
+import com.alex.blog.tag.TagDictionary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Searches the title and the text of a post instead of a title substring.
+ * Offset pages are ordered by rank, keyset pages keep seeking on {@code p.id}.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "blog.search", name = "engine", havingValue = "full-text")
+public class FullTextPostSearchImpl extends JdbcNativePostSearchImpl {
+
+    public FullTextPostSearchImpl(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                  JdbcTemplate jdbcTemplate,
+                                  TagBitmapIndex tagBitmapIndex,
+                                  TagDictionary tagDictionary,
+                                  SearchCountCache searchCountCache,
+                                  SqlDialect sqlDialect,
+                                  @Value("${blog.search.single-query:false}") boolean singleQuery,
+                                  @Value("${blog.search.preview-length:128}") int previewLength,
+                                  @Value("${blog.search.export.fetch-size:1000}") int exportFetchSize) {
+        super(namedParameterJdbcTemplate, jdbcTemplate, tagBitmapIndex, tagDictionary, searchCountCache, sqlDialect,
+                singleQuery, previewLength, exportFetchSize);
+    }
+
+    @Override
+    protected void addTitleCondition(String title, List<String> conditions, MapSqlParameterSource params) {
+        conditions.add(sqlDialect.fullTextCondition(title, params));
+    }
+
+    @Override
+    protected String orderBy(Criteria criteria) {
+        return hasTitle(criteria)
+                ? " ORDER BY " + sqlDialect.fullTextRank(criteria.title()) + " DESC, p.id"
+                : super.orderBy(criteria);
+    }
+}
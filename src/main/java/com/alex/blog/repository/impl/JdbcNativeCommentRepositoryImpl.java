@@ -4,6 +4,7 @@ import com.alex.blog.model.Comment;
 import com.alex.blog.repository.CommentRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
@@ -11,7 +12,9 @@ import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -21,10 +24,10 @@ public class JdbcNativeCommentRepositoryImpl implements CommentRepository {
     private final JdbcTemplate jdbcTemplate;
 
     @Override
-    public Comment save(Comment comment) {
+    public Optional<Comment> save(Comment comment) {
         String sqlUpdate = """
                             INSERT INTO comments (text, post_id)
-                             VALUES(?,?)
+                             SELECT ?, id FROM posts WHERE id = ?
                 """;
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(con -> {
@@ -37,25 +40,49 @@ public class JdbcNativeCommentRepositoryImpl implements CommentRepository {
     }
 
     @Override
-    public void delete(Long id) {
+    public List<Comment> saveAll(List<Comment> comments) {
+        String sqlInsert = """
+                            INSERT INTO comments (text, post_id)
+                             VALUES(?,?)
+                """;
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(sqlInsert, new String[]{"id", "text", "post_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, comments.get(i).getText());
+                        ps.setLong(2, comments.get(i).getPostId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return comments.size();
+                    }
+                }, keyHolder);
+        return keyHolder.getKeyList().stream().map(this::map).toList();
+    }
+
+    @Override
+    public boolean delete(Long postId, Long id) {
         String sqlDelete = """
-                    DELETE FROM comments WHERE id = ?
+                    DELETE FROM comments WHERE id = ? AND post_id = ?
                 """;
-        jdbcTemplate.update(sqlDelete, id);
+        return jdbcTemplate.update(sqlDelete, id, postId) > 0;
     }
 
     @Override
-    public Comment update(Comment comment) {
+    public Optional<Comment> update(Comment comment) {
+        // a comment without text keeps its text, as the fields missing from the update request are not changed
         String sqlUpdate = """
-                UPDATE comments SET text=?, post_id=?
-                WHERE id=?
+                UPDATE comments SET text=COALESCE(?, text)
+                WHERE id=? AND post_id=?
                 """;
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(con -> {
             PreparedStatement ps = con.prepareStatement(sqlUpdate, new String[]{"id", "text", "post_id"});
             ps.setString(1, comment.getText());
-            ps.setLong(2, comment.getPostId());
-            ps.setLong(3, comment.getId());
+            ps.setLong(2, comment.getId());
+            ps.setLong(3, comment.getPostId());
             return ps;
         }, keyHolder);
 
@@ -87,11 +114,23 @@ public class JdbcNativeCommentRepositoryImpl implements CommentRepository {
     public List<Comment> findCommentsByPostId(Long postId) {
         String sqlSelect = """
                 SELECT id,text,post_id FROM comments WHERE post_id = ?
+                ORDER BY id
                 """;
         return jdbcTemplate.query(sqlSelect, getRowMapper(), postId);
 
     }
 
+    @Override
+    public List<Comment> findCommentsByPostIdAfter(Long postId, Long afterId, int limit) {
+        String sqlSelect = """
+                SELECT id,text,post_id FROM comments
+                WHERE post_id = ? AND id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sqlSelect, getRowMapper(), postId, afterId, limit);
+    }
+
 
     private RowMapper<Comment> getRowMapper() {
         return (rs, rc) -> {
@@ -104,13 +143,15 @@ public class JdbcNativeCommentRepositoryImpl implements CommentRepository {
         };
     }
 
-    private Comment map(KeyHolder keyHolder) {
-        return keyHolder.getKeyList().stream().map(m -> {
-            Comment comment = new Comment();
-            comment.setId((Long) m.get(Comment.Fields.id));
-            comment.setText((String) m.get(Comment.Fields.text));
-            comment.setPostId((Long) m.get("post_id"));
-            return comment;
-        }).findFirst().orElseThrow();
+    private Optional<Comment> map(KeyHolder keyHolder) {
+        return keyHolder.getKeyList().stream().map(this::map).findFirst();
+    }
+
+    private Comment map(Map<String, Object> keys) {
+        Comment comment = new Comment();
+        comment.setId((Long) keys.get(Comment.Fields.id));
+        comment.setText((String) keys.get(Comment.Fields.text));
+        comment.setPostId((Long) keys.get("post_id"));
+        return comment;
     }
 }
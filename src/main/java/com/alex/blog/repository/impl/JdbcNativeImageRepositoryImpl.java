@@ -0,0 +1,262 @@
+package com.alex.blog.repository.impl;
+
+import com.alex.blog.event.PostImageUpdatedEvent;
+import com.alex.blog.model.ImageMetadata;
+import com.alex.blog.repository.ImageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The image columns of the posts besides {@code image} itself: {@code image_path} is the path of the image file
+ * of the file system storage relative to its root, {@code image_hash}, {@code image_content_type} and
+ * {@code image_updated_at} are recorded on upload for the conditional requests of the image.
+ * The resized variants in {@code post_image_variants} are of the image with their {@code source_hash}.
+ * An image uploaded since the deduplication is in {@code images} once per content, {@code posts.image_hash} points
+ * to it while {@code posts.image} is NULL and every such post is counted in its {@code ref_count}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JdbcNativeImageRepositoryImpl implements ImageRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public boolean acquireImage(String hash) {
+        String sqlUpdate = """
+                UPDATE images SET ref_count = ref_count + 1
+                WHERE hash = ?
+                """;
+        return jdbcTemplate.update(sqlUpdate, hash) > 0;
+    }
+
+    @Override
+    public boolean acquireStoredImage(String hash) {
+        String sqlUpdate = """
+                UPDATE images SET ref_count = ref_count + 1
+                WHERE hash = ? AND image IS NOT NULL
+                """;
+        return jdbcTemplate.update(sqlUpdate, hash) > 0;
+    }
+
+    @Override
+    public boolean existsImage(String hash) {
+        String sqlExists = """
+                SELECT EXISTS (SELECT 1 FROM images WHERE hash = ?)
+                """;
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlExists, Boolean.class, hash));
+    }
+
+    @Override
+    public boolean insertImage(String hash, InputStream image, long size) {
+        String sqlInsert = """
+                INSERT INTO images (hash, image, ref_count)
+                VALUES (?, ?, 1)
+                ON CONFLICT DO NOTHING
+                """;
+        // the driver sends the stream in chunks, the image is never held in the heap as a whole
+        return jdbcTemplate.update(sqlInsert, ps -> {
+            ps.setString(1, hash);
+            if (image != null) {
+                ps.setBinaryStream(2, image, size);
+            } else {
+                ps.setNull(2, Types.BINARY);
+            }
+        }) > 0;
+    }
+
+    @Override
+    public boolean storeMissingImage(String hash, InputStream image, long size) {
+        // a row of the file system storage or of the references backfilled at startup has no content
+        String sqlUpdate = """
+                UPDATE images SET image = ?, ref_count = ref_count + 1
+                WHERE hash = ? AND image IS NULL
+                """;
+        return jdbcTemplate.update(sqlUpdate, ps -> {
+            ps.setBinaryStream(1, image, size);
+            ps.setString(2, hash);
+        }) > 0;
+    }
+
+    @Override
+    public boolean referenceImage(Long postId, String hash, String imagePath) {
+        List<String> previousHash = lockReferencedHash(postId);
+        if (previousHash.isEmpty()) {
+            return false;
+        }
+        String sqlUpdate = """
+                UPDATE posts SET image_hash = ?, image_path = ?, image = NULL
+                WHERE id = ?
+                """;
+        jdbcTemplate.update(sqlUpdate, hash, imagePath, postId);
+        decrementRefCount(previousHash.getFirst());
+        eventPublisher.publishEvent(new PostImageUpdatedEvent(postId));
+        return true;
+    }
+
+    @Override
+    public void releaseImage(Long postId) {
+        lockReferencedHash(postId).forEach(this::decrementRefCount);
+    }
+
+    @Override
+    public List<String> findOrphanImageHashes(int limit) {
+        String sqlSelect = """
+                SELECT hash FROM images
+                WHERE ref_count = 0
+                LIMIT ?
+                """;
+        return jdbcTemplate.queryForList(sqlSelect, String.class, limit);
+    }
+
+    @Override
+    public boolean deleteOrphanImage(String hash) {
+        // the deleted row stays locked until the commit, an upload of the same image waits for it
+        String sqlDelete = """
+                DELETE FROM images
+                WHERE hash = ? AND ref_count = 0
+                """;
+        return jdbcTemplate.update(sqlDelete, hash) > 0;
+    }
+
+    @Override
+    public boolean updateImageMetadata(Long postId, String hash, String contentType) {
+        String sqlUpdate = """
+                UPDATE posts SET image_hash = ?, image_content_type = ?, image_updated_at = CURRENT_TIMESTAMP
+                WHERE id = ?
+                """;
+        return jdbcTemplate.update(sqlUpdate, hash, contentType, postId) > 0;
+    }
+
+    @Override
+    public Optional<ImageMetadata> findImageMetadata(Long postId) {
+        String sqlSelect = """
+                SELECT image_path, image_hash, image_content_type, image_updated_at FROM posts
+                WHERE id = ? AND (image_path IS NOT NULL OR image IS NOT NULL OR image_hash IS NOT NULL)
+                """;
+        return jdbcTemplate.query(sqlSelect, (rs, rowNum) -> {
+            Timestamp updatedAt = rs.getTimestamp("image_updated_at");
+            return new ImageMetadata(rs.getString("image_path"), rs.getString("image_hash"),
+                    rs.getString("image_content_type"), updatedAt != null ? updatedAt.toInstant() : null);
+        }, postId).stream().findFirst();
+    }
+
+    @Override
+    public Optional<Long> findImageSize(Long postId) {
+        String sqlSelect = """
+                SELECT octet_length(COALESCE(p.image, i.image)) FROM posts p
+                LEFT JOIN images i ON i.hash = p.image_hash
+                WHERE p.id = ?
+                """;
+        try {
+            return Optional.ofNullable(jdbcTemplate.queryForObject(sqlSelect, Long.class, postId));
+        } catch (EmptyResultDataAccessException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<byte[]> findImageSlice(Long postId, String hash, long offset, int length) {
+        // with the EXTERNAL storage of the columns only the TOAST chunks of the slice are read
+        String sqlSelect = """
+                SELECT substring(COALESCE(p.image, i.image) FROM ? FOR ?) FROM posts p
+                LEFT JOIN images i ON i.hash = p.image_hash
+                WHERE p.id = ? AND p.image_hash IS NOT DISTINCT FROM ?
+                """;
+        return jdbcTemplate.query(sqlSelect, (rs, rowNum) -> rs.getBytes(1), offset + 1, length, postId, hash)
+                .stream()
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    @Override
+    public void saveImageVariant(Long postId, String variant, String sourceHash, byte[] image) {
+        String sqlUpdate = """
+                UPDATE post_image_variants SET source_hash = ?, image = ?
+                WHERE post_id = ? AND variant = ?
+                """;
+        String sqlInsert = """
+                INSERT INTO post_image_variants (post_id, variant, source_hash, image)
+                VALUES (?, ?, ?, ?)
+                """;
+        if (jdbcTemplate.update(sqlUpdate, sourceHash, image, postId, variant) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(sqlInsert, postId, variant, sourceHash, image);
+        } catch (DuplicateKeyException e) {
+            // saved by another instance in the meantime, both are generated from the same original
+        } catch (DataIntegrityViolationException e) {
+            // the post was deleted during the generation
+        }
+    }
+
+    @Override
+    public Optional<byte[]> findImageVariant(Long postId, String variant, String sourceHash) {
+        String sqlSelect = """
+                SELECT image FROM post_image_variants
+                WHERE post_id = ? AND variant = ? AND source_hash = ?
+                """;
+        return jdbcTemplate.query(sqlSelect, (rs, rowNum) -> rs.getBytes("image"), postId, variant, sourceHash)
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public List<Long> findPostIdsWithDatabaseImages(Long afterPostId, int limit) {
+        String sqlSelect = """
+                SELECT id FROM posts
+                WHERE id > ? AND image IS NOT NULL AND image_path IS NULL
+                ORDER BY id
+                LIMIT ?
+                """;
+        return jdbcTemplate.queryForList(sqlSelect, Long.class, afterPostId, limit);
+    }
+
+    @Override
+    public boolean moveDatabaseImageToPath(Long postId, String imagePath, String hash) {
+        // an image uploaded during the move has already set the path and is kept
+        String sqlUpdate = """
+                UPDATE posts SET image_path = ?, image_hash = ?, image = NULL
+                WHERE id = ? AND image_path IS NULL
+                """;
+        return jdbcTemplate.update(sqlUpdate, imagePath, hash, postId) > 0;
+    }
+
+    /**
+     * Locks the post row, so a concurrent upload or delete of the post can't count its image twice.
+     *
+     * @return the hash counted in {@code images} for the post or {@code null} when none is, empty when there is no such post
+     */
+    private List<String> lockReferencedHash(Long postId) {
+        String sqlSelect = """
+                SELECT CASE WHEN image IS NULL THEN image_hash END FROM posts
+                WHERE id = ?
+                FOR UPDATE
+                """;
+        return jdbcTemplate.queryForList(sqlSelect, String.class, postId);
+    }
+
+    private void decrementRefCount(String hash) {
+        if (hash == null) {
+            return;
+        }
+        String sqlUpdate = """
+                UPDATE images SET ref_count = ref_count - 1
+                WHERE hash = ? AND ref_count > 0
+                """;
+        jdbcTemplate.update(sqlUpdate, hash);
+    }
+}
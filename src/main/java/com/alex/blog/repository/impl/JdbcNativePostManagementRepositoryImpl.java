@@ -1,8 +1,16 @@
 package com.alex.blog.repository.impl;
 
+import com.alex.blog.cache.LivePostIdsCache;
+import com.alex.blog.event.CommentsCountChangedEvent;
+import com.alex.blog.event.LikesCountChangedEvent;
+import com.alex.blog.event.PostCreatedEvent;
+import com.alex.blog.event.PostDeletedEvent;
+import com.alex.blog.event.PostUpdatedEvent;
 import com.alex.blog.model.Post;
 import com.alex.blog.repository.PostManagementRepository;
-import lombok.RequiredArgsConstructor;
+import com.alex.blog.tag.TagDictionary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
@@ -15,12 +23,35 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.swing.text.html.Option;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * With like shards the likes of a post are added to one of its {@code post_like_shards} rows chosen at random,
+ * so concurrent likes of a popular post don't queue up on the post row lock.
+ * The shards are folded into {@code posts.likes_count} by {@link #compactLikeShards}, until then only the likes reads sum them.
+ */
 @Repository
-@RequiredArgsConstructor
 public class JdbcNativePostManagementRepositoryImpl implements PostManagementRepository {
     private final JdbcTemplate jdbcTemplate;
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LivePostIdsCache livePostIdsCache;
+    private final TagDictionary tagDictionary;
+    private final int likeShards;
+
+    public JdbcNativePostManagementRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                                  NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                                  ApplicationEventPublisher eventPublisher,
+                                                  LivePostIdsCache livePostIdsCache,
+                                                  TagDictionary tagDictionary,
+                                                  @Value("${blog.likes.shards.count:0}") int likeShards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.livePostIdsCache = livePostIdsCache;
+        this.tagDictionary = tagDictionary;
+        this.likeShards = likeShards;
+    }
 
     @Override
     public boolean existsById(Long postId) {
@@ -28,7 +59,8 @@ public class JdbcNativePostManagementRepositoryImpl implements PostManagementRep
         String sqlExists = """ 
                 SELECT EXISTS (SELECT 1 FROM posts WHERE id = ?)
                 """;
-        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlExists, Boolean.class, postId));
+        return livePostIdsCache.contains(postId)
+                .orElseGet(() -> Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlExists, Boolean.class, postId)));
     }
 
     @Override
@@ -53,16 +85,24 @@ public class JdbcNativePostManagementRepositoryImpl implements PostManagementRep
 
 
     @Override
-    public void delete(Long id) {
+    public boolean delete(Long id) {
         String sqlDel = """
                 DELETE FROM posts WHERE id = ?
                 """;
 
-        jdbcTemplate.update(sqlDel, id);
+        List<String> tags = findTagsForPost(id);
+        if (jdbcTemplate.update(sqlDel, id) == 0) {
+            return false;
+        }
+        eventPublisher.publishEvent(new PostDeletedEvent(id, tags));
+        return true;
     }
 
     @Override
-    public Long incrementLikesCount(Long postId) {
+    public Optional<Long> incrementLikesCount(Long postId) {
+        if (likeShards > 0) {
+            return incrementLikesShard(postId);
+        }
         String sqlUpdate = """
                 UPDATE posts SET likes_count = likes_count + 1
                 WHERE id = ?
@@ -74,22 +114,96 @@ public class JdbcNativePostManagementRepositoryImpl implements PostManagementRep
             return ps;
         }, keyHolder);
 
-        return (Long) keyHolder.getKeyList().getFirst().get("likes_count");
+        Optional<Long> likesCount = keyHolder.getKeyList().stream()
+                .map(keys -> (Long) keys.get("likes_count"))
+                .findFirst();
+        likesCount.ifPresent(likes -> eventPublisher.publishEvent(new LikesCountChangedEvent(postId, likes)));
+        return likesCount;
+    }
+
+    private Optional<Long> incrementLikesShard(Long postId) {
+        String sqlUpdateShard = """
+                UPDATE post_like_shards SET likes = likes + 1
+                WHERE post_id = ? AND slot = ?
+                """;
+        String sqlInsertShard = """
+                INSERT INTO post_like_shards (post_id, slot, likes)
+                SELECT id, ?, 1 FROM posts WHERE id = ?
+                ON CONFLICT DO NOTHING
+                """;
+        int slot = ThreadLocalRandom.current().nextInt(likeShards);
+        if (jdbcTemplate.update(sqlUpdateShard, postId, slot) == 0
+                && jdbcTemplate.update(sqlInsertShard, slot, postId) == 0
+                // the slot has been created by a concurrent like, otherwise there is no such post
+                && jdbcTemplate.update(sqlUpdateShard, postId, slot) == 0) {
+            return Optional.empty();
+        }
+
+        Optional<Long> likesCount = findLikesCount(postId);
+        likesCount.ifPresent(likes -> eventPublisher.publishEvent(new LikesCountChangedEvent(postId, likes)));
+        return likesCount;
     }
 
     @Override
-    public boolean updateImage(Long postId, byte[] image) {
+    @Transactional
+    public int compactLikeShards(int limit) {
+        String sqlSelectShards = """
+                SELECT post_id, slot, likes FROM post_like_shards
+                WHERE likes <> 0
+                ORDER BY post_id, slot
+                LIMIT ?
+                """;
+        String sqlUpdateShard = """
+                UPDATE post_like_shards SET likes = likes - ?
+                WHERE post_id = ? AND slot = ?
+                """;
+        List<Object[]> shards = jdbcTemplate.query(sqlSelectShards,
+                (rs, rc) -> new Object[]{rs.getLong("likes"), rs.getLong("post_id"), rs.getInt("slot")}, limit);
+        if (shards.isEmpty()) {
+            return 0;
+        }
+
+        // the likes added to a shard after the select stay in it
+        jdbcTemplate.batchUpdate(sqlUpdateShard, shards);
+        Map<Long, Long> likesDeltas = new HashMap<>();
+        shards.forEach(shard -> likesDeltas.merge((Long) shard[1], (Long) shard[0], Long::sum));
+        addLikesCounts(likesDeltas);
+        return shards.size();
+    }
+
+    @Override
+    public Optional<Long> findLikesCount(Long postId) {
+        String sqlSelect = likeShards > 0
+                ? """
+                SELECT p.likes_count + COALESCE((SELECT SUM(s.likes) FROM post_like_shards AS s WHERE s.post_id = p.id), 0)
+                FROM posts AS p WHERE p.id = ?
+                """
+                : """
+                SELECT likes_count FROM posts WHERE id = ?
+                """;
+        try {
+            return Optional.ofNullable(jdbcTemplate.queryForObject(sqlSelect, Long.class, postId));
+        } catch (EmptyResultDataAccessException e) {
+            return Optional.empty();
+        }
+    }
 
+    @Override
+    @Transactional
+    public void addLikesCounts(Map<Long, Long> likesDeltas) {
         String sqlUpdate = """
-                UPDATE posts SET image = ?
+                UPDATE posts SET likes_count = likes_count + ?
                 WHERE id = ?
                 """;
-        return jdbcTemplate.update(sqlUpdate, image, postId) > 0;
+        // the same lock order for every flush, so concurrent flushes of several instances can't deadlock
+        List<Object[]> batchArgs = new TreeMap<>(likesDeltas).entrySet().stream()
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .toList();
+        jdbcTemplate.batchUpdate(sqlUpdate, batchArgs);
     }
 
-
     @Override
-    public Long incrementCommentsCount(Long postId, Long incValue) {
+    public Optional<Long> incrementCommentsCount(Long postId, Long incValue) {
         String sql = """
                     UPDATE posts
                     SET  comments_count=comments_count+?
@@ -103,7 +217,11 @@ public class JdbcNativePostManagementRepositoryImpl implements PostManagementRep
             return ps;
         }, keyHolder);
 
-        return (Long) keyHolder.getKeyList().getFirst().get("comments_count");
+        Optional<Long> commentsCount = keyHolder.getKeyList().stream()
+                .map(keys -> (Long) keys.get("comments_count"))
+                .findFirst();
+        commentsCount.ifPresent(comments -> eventPublisher.publishEvent(new CommentsCountChangedEvent(postId, comments)));
+        return commentsCount;
     }
 
 
@@ -112,9 +230,19 @@ public class JdbcNativePostManagementRepositoryImpl implements PostManagementRep
 
         Long updatedId = updatePostWithoutTags(post);
 
-        deleteTagsForPost(updatedId);
+        List<String> oldTags = findTagsForPost(updatedId);
+
+        // only the changed tags are written, an edit of the title or text doesn't touch posts_tags
+        Set<String> removedTags = new LinkedHashSet<>(oldTags);
+        post.getTags().forEach(removedTags::remove);
+        Set<String> addedTags = new LinkedHashSet<>(post.getTags());
+        oldTags.forEach(addedTags::remove);
+
+        deleteTagsForPost(updatedId, removedTags);
+
+        saveTagsForPost(updatedId, List.copyOf(addedTags));
 
-        saveTagsForPost(updatedId, post.getTags());
+        eventPublisher.publishEvent(new PostUpdatedEvent(updatedId, oldTags, post.getTags()));
 
         post.setId(updatedId);
         return post;
@@ -138,32 +266,53 @@ public class JdbcNativePostManagementRepositoryImpl implements PostManagementRep
         return (Long) keyHolder.getKeyList().getFirst().get("id");
     }
 
-    private void deleteTagsForPost(Long postId) {
-        String sqlDelete = """
-                DELETE FROM post_tags
+    private List<String> findTagsForPost(Long postId) {
+        String sqlSelect = """
+                SELECT tag_id FROM posts_tags
                 WHERE post_id=?
                 """;
-        jdbcTemplate.update(sqlDelete, postId);
+        List<Integer> tagIds = jdbcTemplate.queryForList(sqlSelect, Integer.class, postId);
+        Map<Integer, String> tagNames = tagDictionary.findNames(tagIds);
+        return tagIds.stream().map(tagNames::get).toList();
+    }
+
+    private void deleteTagsForPost(Long postId, Collection<String> tags) {
+        Collection<Integer> tagIds = tagDictionary.findIds(tags).values();
+        if (tagIds.isEmpty()) {
+            return;
+        }
+        String sqlDelete = """
+                DELETE FROM posts_tags
+                WHERE post_id = :postId AND tag_id IN (:tagIds)
+                """;
+        namedParameterJdbcTemplate.update(sqlDelete, new MapSqlParameterSource()
+                .addValue("postId", postId)
+                .addValue("tagIds", tagIds));
     }
 
     private void saveTagsForPost(Long postId, List<String> tags) {
-        SqlParameterSource[] batchArgsPostTag = tags.stream()
-                .map(tagName -> new MapSqlParameterSource()
+        if (tags.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batchArgsPostTag = tagDictionary.findOrCreateIds(tags).values().stream()
+                .map(tagId -> new MapSqlParameterSource()
                         .addValue("postId", postId)
-                        .addValue("tagName", tagName))
+                        .addValue("tagId", tagId))
                 .toArray(SqlParameterSource[]::new);
 
         String sqlLinkTagsToPost = """
-                INSERT INTO post_tags (post_id, tag)
-                VALUES (:postId, :tagName)
+                INSERT INTO posts_tags (post_id, tag_id)
+                VALUES (:postId, :tagId)
                 """;
         namedParameterJdbcTemplate.batchUpdate(sqlLinkTagsToPost, batchArgsPostTag);
     }
 
-    private Long savePostWithoutTags(Post post) {
+    private Optional<Long> savePostWithoutTags(Post post) {
+        // no row is inserted for a taken title
         String sqlInsertPost = """
                 INSERT INTO posts (title, text)
                  VALUES (?,?)
+                ON CONFLICT DO NOTHING
                 """;
 
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -174,18 +323,22 @@ public class JdbcNativePostManagementRepositoryImpl implements PostManagementRep
             return ps;
         }, keyHolder);
 
-        return (Long) keyHolder.getKeyList().getFirst().get("id");
+        return keyHolder.getKeyList().stream()
+                .map(keys -> (Long) keys.get("id"))
+                .findFirst();
     }
 
     @Override
     @Transactional
-    public Post save(Post post) {
-        Long savedPostId = savePostWithoutTags(post);
+    public Optional<Post> save(Post post) {
+        return savePostWithoutTags(post).map(savedPostId -> {
+            saveTagsForPost(savedPostId, post.getTags());
 
-        saveTagsForPost(savedPostId, post.getTags());
+            eventPublisher.publishEvent(new PostCreatedEvent(savedPostId, post.getTags()));
 
-        post.setId(savedPostId);
-        return post;
+            post.setId(savedPostId);
+            return post;
+        });
     }
 
 }
@@ -1,59 +1,281 @@
 package com.alex.blog.repository.impl;
 
+import com.alex.blog.cache.SearchCountCache;
 import com.alex.blog.model.Post;
 import com.alex.blog.repository.PostSearchRepository;
+import com.alex.blog.repository.dialect.SqlDialect;
 import com.alex.blog.search.Criteria;
-import lombok.RequiredArgsConstructor;
+import com.alex.blog.search.Cursor;
+import com.alex.blog.search.index.TagBitmapIndex;
+import com.alex.blog.tag.TagDictionary;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Array;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
+/**
+ * In the single query mode the tags of a post are aggregated into an array column and an offset page
+ * carries its total in a window column, so a search costs one round trip instead of three.
+ * Search pages select only a preview of the text, the full text is loaded by {@link #findPostById}.
+ */
 @Repository
-@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "blog.search", name = "engine", havingValue = "like", matchIfMissing = true)
 public class JdbcNativePostSearchImpl implements PostSearchRepository {
 
+    private static final int MAX_INDEXED_IDS_IN_QUERY = 1000;
+
     private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final NamedParameterJdbcTemplate exportJdbcTemplate;
     private final JdbcTemplate jdbcTemplate;
+    private final TagBitmapIndex tagBitmapIndex;
+    private final TagDictionary tagDictionary;
+    private final SearchCountCache searchCountCache;
+    protected final SqlDialect sqlDialect;
+    private final boolean singleQuery;
+    private final int previewLength;
 
+    public JdbcNativePostSearchImpl(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                    JdbcTemplate jdbcTemplate,
+                                    TagBitmapIndex tagBitmapIndex,
+                                    TagDictionary tagDictionary,
+                                    SearchCountCache searchCountCache,
+                                    SqlDialect sqlDialect,
+                                    @Value("${blog.search.single-query:false}") boolean singleQuery,
+                                    @Value("${blog.search.preview-length:128}") int previewLength,
+                                    @Value("${blog.search.export.fetch-size:1000}") int exportFetchSize) {
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        JdbcTemplate exportTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        exportTemplate.setFetchSize(exportFetchSize);
+        this.exportJdbcTemplate = new NamedParameterJdbcTemplate(exportTemplate);
+        this.jdbcTemplate = jdbcTemplate;
+        this.tagBitmapIndex = tagBitmapIndex;
+        this.tagDictionary = tagDictionary;
+        this.searchCountCache = searchCountCache;
+        this.sqlDialect = sqlDialect;
+        this.singleQuery = singleQuery;
+        this.previewLength = previewLength;
+    }
 
     public Page<Post> findPostsByCriteriaAndPageable(Criteria criteria, Pageable pageable) {
+        Optional<Roaring64Bitmap> taggedPostsIds = findTaggedPostsIds(criteria);
+        if (taggedPostsIds.isPresent() && (!hasTitle(criteria) || taggedPostsIds.get().isEmpty())) {
+            return findPageInTagIndex(taggedPostsIds.get(), pageable);
+        }
+
         MapSqlParameterSource params = new MapSqlParameterSource();
-        String sqlWhere = buildWhere(criteria, params, pageable);
+        String sqlWhere = buildWhere(criteria, taggedPostsIds, params);
+        if (singleQuery) {
+            return findPageWithWindowCount(criteria, sqlWhere, params, pageable);
+        }
+
+        Long countElements = countPosts(criteria, sqlWhere, params);
+
+        List<Post> posts = findPostsByOffset(criteria, sqlWhere, params, pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(posts, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()), countElements);
+    }
+
+    private Page<Post> findPageWithWindowCount(Criteria criteria, String sqlWhere, MapSqlParameterSource params, Pageable pageable) {
+        params.addValue("limit", pageable.getPageSize());
+        params.addValue("offset", pageable.getOffset());
+
+        StringBuilder sqlSelect = new StringBuilder("SELECT ")
+                .append(postColumns())
+                .append(", COUNT(*) OVER() AS total_count FROM posts AS p")
+                .append(sqlWhere)
+                .append(orderBy(criteria))
+                .append(" LIMIT :limit OFFSET :offset");
+
+        AtomicLong total = new AtomicLong();
+        RowMapper<Post> rowMapperPost = getRowMapperPost();
+        List<Post> posts = namedParameterJdbcTemplate.query(sqlSelect.toString(), params, (rs, rc) -> {
+            total.set(rs.getLong("total_count"));
+            return rowMapperPost.mapRow(rs, rc);
+        });
+
+        // a page past the end has no row to carry the total
+        long countElements = posts.isEmpty() && pageable.getOffset() > 0 ? countPosts(criteria, sqlWhere, params) : total.get();
+        return new PageImpl<>(posts, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()), countElements);
+    }
 
+    private Long countPosts(Criteria criteria, String sqlWhere, MapSqlParameterSource params) {
         StringBuilder sqlCount = new StringBuilder("""
                 SELECT COUNT (DISTINCT p.id) FROM posts AS p
                 """)
                 .append(sqlWhere);
 
-        Long countElements = namedParameterJdbcTemplate.queryForObject(sqlCount.toString(), params, Long.class);
+        return searchCountCache.getOrLoad(criteria,
+                () -> namedParameterJdbcTemplate.queryForObject(sqlCount.toString(), params, Long.class));
+    }
+
+    @Override
+    public Slice<Post> findSliceByCriteriaAndPageable(Criteria criteria, Pageable pageable) {
+        Optional<Roaring64Bitmap> taggedPostsIds = findTaggedPostsIds(criteria);
+        if (taggedPostsIds.isPresent() && (!hasTitle(criteria) || taggedPostsIds.get().isEmpty())) {
+            Page<Post> page = findPageInTagIndex(taggedPostsIds.get(), pageable);
+            return new SliceImpl<>(page.getContent(), page.getPageable(), page.hasNext());
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sqlWhere = buildWhere(criteria, taggedPostsIds, params);
 
-        StringBuilder sqlSelect = new StringBuilder("""
-                SELECT DISTINCT p.id,p.title,p.text,p.likes_count,p.comments_count FROM posts AS p
-                """)
+        List<Post> posts = findPostsByOffset(criteria, sqlWhere, params, pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasNext = posts.size() > pageable.getPageSize();
+        if (hasNext) {
+            posts.removeLast();
+        }
+        return new SliceImpl<>(posts, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()), hasNext);
+    }
+
+    private List<Post> findPostsByOffset(Criteria criteria, String sqlWhere, MapSqlParameterSource params, long offset, int limit) {
+        params.addValue("limit", limit);
+        params.addValue("offset", offset);
+
+        StringBuilder sqlSelect = new StringBuilder("SELECT ")
+                .append(postColumns())
+                .append(" FROM posts AS p")
                 .append(sqlWhere)
-                .append(" ORDER BY p.id LIMIT :limit OFFSET :offset");
+                .append(orderBy(criteria))
+                .append(" LIMIT :limit OFFSET :offset");
+
+        List<Post> postsWithoutTags = new ArrayList<>(namedParameterJdbcTemplate.query(sqlSelect.toString(), params, getRowMapperPost()));
+        return fetchTags(postsWithoutTags);
+    }
 
+    @Override
+    public Slice<Post> findPostsByCriteriaAndCursor(Criteria criteria, Cursor cursor, int limit) {
+        Optional<Roaring64Bitmap> taggedPostsIds = findTaggedPostsIds(criteria);
+
+        List<Post> postsWithoutTags;
+        if (taggedPostsIds.isPresent() && (!hasTitle(criteria) || taggedPostsIds.get().isEmpty())) {
+            postsWithoutTags = findPostsByIds(seekInTagIndex(taggedPostsIds.get(), cursor, limit + 1));
+        } else {
+            postsWithoutTags = findPostsByCursor(criteria, taggedPostsIds, cursor, limit + 1);
+        }
 
-        List<Post> postsWithoutTags = namedParameterJdbcTemplate.query(sqlSelect.toString(), params, getRowMapperPost());
+        boolean hasMore = postsWithoutTags.size() > limit;
+        if (hasMore) {
+            postsWithoutTags.removeLast();
+        }
+        if (!cursor.isForward()) {
+            Collections.reverse(postsWithoutTags);
+        }
 
         List<Post> posts = fetchTags(postsWithoutTags);
-        return new PageImpl<>(posts, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()), countElements);
+        return new SliceImpl<>(posts, PageRequest.ofSize(limit), hasMore);
+    }
+
+    private List<Post> findPostsByCursor(Criteria criteria, Optional<Roaring64Bitmap> taggedPostsIds, Cursor cursor, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        List<String> conditions = buildConditions(criteria, taggedPostsIds, params);
+
+        if (cursor.id() != null) {
+            params.addValue("cursorId", cursor.id());
+            conditions.add(cursor.isForward() ? " p.id > :cursorId" : " p.id < :cursorId");
+        }
+        params.addValue("limit", limit);
+
+        StringBuilder sqlSelect = new StringBuilder("SELECT ")
+                .append(postColumns())
+                .append(" FROM posts AS p")
+                .append(joinConditions(conditions))
+                .append(cursor.isForward() ? " ORDER BY p.id LIMIT :limit" : " ORDER BY p.id DESC LIMIT :limit");
+
+        return new ArrayList<>(namedParameterJdbcTemplate.query(sqlSelect.toString(), params, getRowMapperPost()));
+    }
+
+    @Override
+    public void exportPostsByCriteria(Criteria criteria, Consumer<Post> consumer) {
+        Optional<Roaring64Bitmap> taggedPostsIds = findTaggedPostsIds(criteria);
+        if (taggedPostsIds.isPresent() && taggedPostsIds.get().isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sqlWhere = buildWhere(criteria, taggedPostsIds, params);
+
+        StringBuilder sqlSelect = new StringBuilder("SELECT p.id,p.title,p.text,FALSE AS text_truncated,p.likes_count,p.comments_count,")
+                .append(sqlDialect.tagsArray())
+                .append(" AS tags FROM posts AS p")
+                .append(sqlWhere)
+                .append(" ORDER BY p.id");
+
+        RowMapper<Post> rowMapperPost = getRowMapperPost(true);
+        exportJdbcTemplate.query(sqlSelect.toString(), params,
+                (RowCallbackHandler) rs -> consumer.accept(rowMapperPost.mapRow(rs, rs.getRow())));
+    }
+
+    private Optional<Roaring64Bitmap> findTaggedPostsIds(Criteria criteria) {
+        return hasTags(criteria) ? tagBitmapIndex.findPostsWithAllTags(criteria.tags()) : Optional.empty();
+    }
+
+    private Page<Post> findPageInTagIndex(Roaring64Bitmap postsIds, Pageable pageable) {
+        long total = postsIds.getLongCardinality();
+        List<Long> pageIds = LongStream.range(pageable.getOffset(), Math.min(total, pageable.getOffset() + pageable.getPageSize()))
+                .mapToObj(postsIds::select)
+                .toList();
+
+        List<Post> posts = fetchTags(findPostsByIds(pageIds));
+        return new PageImpl<>(posts, PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()), total);
+    }
+
+    private List<Long> seekInTagIndex(Roaring64Bitmap postsIds, Cursor cursor, int limit) {
+        long total = postsIds.getLongCardinality();
+        if (cursor.isForward()) {
+            long from = cursor.id() == null ? 0 : postsIds.rankLong(cursor.id());
+            return LongStream.range(from, Math.min(total, from + limit))
+                    .mapToObj(postsIds::select)
+                    .toList();
+        }
+        long to = postsIds.rankLong(cursor.id() - 1);
+        List<Long> ids = new ArrayList<>(LongStream.range(Math.max(0, to - limit), to)
+                .mapToObj(postsIds::select)
+                .toList());
+        Collections.reverse(ids);
+        return ids;
+    }
+
+    private List<Post> findPostsByIds(List<Long> postsIds) {
+        if (postsIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sqlSelect = "SELECT " + postColumns() + " FROM posts AS p WHERE p.id IN (:postsIds)";
+        Map<Long, Post> postsById = namedParameterJdbcTemplate.query(sqlSelect, new MapSqlParameterSource("postsIds", postsIds), getRowMapperPost())
+                .stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+
+        return postsIds.stream()
+                .map(postsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(ArrayList::new));
     }
 
 
     private List<Post> fetchTags(List<Post> posts) {
+        if (singleQuery) {
+            return posts;
+        }
         List<Long> postsIds = posts.stream()
                 .map(Post::getId).toList();
 
@@ -66,52 +288,76 @@ public class JdbcNativePostSearchImpl implements PostSearchRepository {
         return posts;
     }
 
-    private String buildWhere(Criteria criteria, MapSqlParameterSource params, Pageable pageable) {
-        List<String> conditions = new ArrayList<>();
-        if (criteria.title() != null && !criteria.title().isEmpty()) {
-            params.addValue("title", "%" + criteria.title() + "%");
-            conditions.add(" p.title LIKE :title");
-        }
-        if (criteria.tags() != null && !criteria.tags().isEmpty()) {
-            params.addValue("tags", criteria.tags());
-            params.addValue("tagsCount", criteria.tags().size());
-            conditions.add("""
-            p.id IN (
-                SELECT pt.post_id
-                FROM post_tags pt
-                WHERE pt.tag IN (:tags)
-                GROUP BY pt.post_id
-                HAVING COUNT(DISTINCT pt.tag) = :tagsCount
-            )
-        """);
+    private String buildWhere(Criteria criteria, Optional<Roaring64Bitmap> taggedPostsIds, MapSqlParameterSource params) {
+        return joinConditions(buildConditions(criteria, taggedPostsIds, params));
+    }
 
+    private List<String> buildConditions(Criteria criteria, Optional<Roaring64Bitmap> taggedPostsIds, MapSqlParameterSource params) {
+        List<String> conditions = new ArrayList<>();
+        if (hasTitle(criteria)) {
+            addTitleCondition(criteria.title(), conditions, params);
         }
-        params.addValue("limit", pageable.getPageSize());
-        params.addValue("offset", pageable.getPageNumber() * pageable.getOffset());
+        if (taggedPostsIds.isPresent() && taggedPostsIds.get().isEmpty()) {
+            // IN () is not valid SQL
+            conditions.add(" FALSE");
+        } else if (taggedPostsIds.isPresent() && taggedPostsIds.get().getLongCardinality() <= MAX_INDEXED_IDS_IN_QUERY) {
+            params.addValue("taggedPostsIds", LongStream.of(taggedPostsIds.get().toArray()).boxed().toList());
+            conditions.add(" p.id IN (:taggedPostsIds)");
+        } else if (hasTags(criteria)) {
+            Set<String> tags = new HashSet<>(criteria.tags());
+            Collection<Integer> tagIds = tagDictionary.findIds(tags).values();
+            if (tagIds.size() < tags.size()) {
+                // a tag that no post has ever had
+                conditions.add(" FALSE");
+            } else {
+                // the (post_id, tag_id) pairs are unique, the posts with all the tags are counted in the tag_id index
+                params.addValue("tagIds", tagIds);
+                params.addValue("tagsCount", tagIds.size());
+                conditions.add("""
+                p.id IN (
+                    SELECT pt.post_id
+                    FROM posts_tags pt
+                    WHERE pt.tag_id IN (:tagIds)
+                    GROUP BY pt.post_id
+                    HAVING COUNT(*) = :tagsCount
+                )
+            """);
+            }
+        }
+        return conditions;
+    }
 
+    protected void addTitleCondition(String title, List<String> conditions, MapSqlParameterSource params) {
+        params.addValue("title", "%" + title + "%");
+        conditions.add(" p.title LIKE :title");
+    }
 
-        String where = conditions.isEmpty() ? "" :
-                conditions.stream().collect(Collectors.joining(" AND ", " WHERE ", ""));
+    protected String orderBy(Criteria criteria) {
+        return " ORDER BY p.id";
+    }
+
+    protected boolean hasTitle(Criteria criteria) {
+        return criteria.title() != null && !criteria.title().isEmpty();
+    }
 
-        return where;
+    protected boolean hasTags(Criteria criteria) {
+        return criteria.tags() != null && !criteria.tags().isEmpty();
+    }
+
+    private String joinConditions(List<String> conditions) {
+        return conditions.isEmpty() ? "" :
+                conditions.stream().collect(Collectors.joining(" AND ", " WHERE ", ""));
     }
 
 
     @Override
     public Optional<Post> findPostById(Long id) {
 
-        String sqlSelect = """
-                SELECT p.id,p.title,p.text,p.likes_count,p.comments_count
-                FROM posts AS p
-                WHERE p.id = ?
-                """;
+        String sqlSelect = "SELECT " + fullPostColumns() + " FROM posts AS p WHERE p.id = ?";
         try {
             Optional<Post> maybePost = Optional.ofNullable(jdbcTemplate.queryForObject(sqlSelect, getRowMapperPost(), id));
 
-            maybePost.ifPresent(post -> {
-                Map<Long, List<String>> tags = findTagsByPostsIds(List.of(post.getId()));
-                post.setTags(tags.getOrDefault(post.getId(), new ArrayList<>()));
-            });
+            maybePost.ifPresent(post -> fetchTags(List.of(post)));
             return maybePost;
 
         } catch (EmptyResultDataAccessException e) {
@@ -120,34 +366,74 @@ public class JdbcNativePostSearchImpl implements PostSearchRepository {
     }
 
     private Map<Long, List<String>> findTagsByPostsIds(List<Long> postsIds) {
+        if (postsIds.isEmpty()) {
+            return new HashMap<>();
+        }
         SqlParameterSource params = new MapSqlParameterSource("postsIds", postsIds);
-        Map<Long, List<String>> tags = new HashMap<>();
+        Map<Long, List<Integer>> tagIds = new HashMap<>();
         String sqlSelect = """
-                SELECT post_id, tag
-                FROM post_tags
+                SELECT post_id, tag_id
+                FROM posts_tags
                 WHERE post_id IN (:postsIds)
                 """;
         namedParameterJdbcTemplate.query(sqlSelect, params,
-                (rs, rc) -> {
-                    Long postId = rs.getLong("post_id");
-                    String tag = rs.getString("tag");
-                    tags.computeIfAbsent(postId, k -> new ArrayList<>()).add(tag);
-                    return tags;
-                });
+                (RowCallbackHandler) rs -> tagIds.computeIfAbsent(rs.getLong("post_id"), k -> new ArrayList<>())
+                        .add(rs.getInt("tag_id")));
+
+        Map<Integer, String> tagNames = tagDictionary.findNames(tagIds.values().stream().flatMap(List::stream).toList());
+        Map<Long, List<String>> tags = new HashMap<>();
+        tagIds.forEach((postId, ids) -> tags.put(postId, ids.stream()
+                .map(tagNames::get)
+                .collect(Collectors.toCollection(ArrayList::new))));
         return tags;
 
     }
 
+    private String postColumns() {
+        return postColumns("LEFT(p.text, %1$d) AS text,CHAR_LENGTH(LEFT(p.text, %2$d)) > %1$d AS text_truncated"
+                .formatted(previewLength, previewLength + 1));
+    }
+
+    private String fullPostColumns() {
+        return postColumns("p.text,FALSE AS text_truncated");
+    }
+
+    private String postColumns(String textColumns) {
+        String columns = "p.id,p.title," + textColumns + ",p.likes_count,p.comments_count";
+        return singleQuery ? columns + "," + sqlDialect.tagsArray() + " AS tags" : columns;
+    }
+
     private RowMapper<Post> getRowMapperPost() {
+        return getRowMapperPost(singleQuery);
+    }
+
+    private RowMapper<Post> getRowMapperPost(boolean withTagsArray) {
         return (rs, rc) -> {
             Post post = new Post();
             post.setId(rs.getLong(Post.Fields.id));
             post.setTitle(rs.getString(Post.Fields.title));
             post.setText(rs.getString(Post.Fields.text));
+            post.setTextTruncated(rs.getBoolean("text_truncated"));
             post.setLikesCount(rs.getLong("likes_count"));
             post.setCommentsCount(rs.getLong("comments_count"));
+            if (withTagsArray) {
+                post.setTags(toTags(rs.getArray("tags")));
+            }
             return post;
         };
     }
 
+    private List<String> toTags(Array tagIds) throws SQLException {
+        if (tagIds == null) {
+            return new ArrayList<>();
+        }
+        List<Integer> ids = Arrays.stream((Object[]) tagIds.getArray())
+                .map(id -> ((Number) id).intValue())
+                .toList();
+        Map<Integer, String> tagNames = tagDictionary.findNames(ids);
+        return ids.stream()
+                .map(tagNames::get)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
 }
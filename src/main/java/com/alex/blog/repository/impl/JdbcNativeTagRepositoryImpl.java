@@ -0,0 +1,32 @@
+package com.alex.blog.repository.impl;
+
+import com.alex.blog.api.dto.TagSuggestionDto;
+import com.alex.blog.repository.TagRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class JdbcNativeTagRepositoryImpl implements TagRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<TagSuggestionDto> findMostUsedByPrefix(String prefix, int limit) {
+        String sqlSelect = """
+                SELECT t.name AS tag, COUNT(*) AS posts_count
+                FROM tags t
+                JOIN posts_tags pt ON pt.tag_id = t.id
+                WHERE t.name LIKE ? ESCAPE '\\'
+                GROUP BY t.name
+                ORDER BY posts_count DESC, t.name
+                LIMIT ?
+                """;
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return jdbcTemplate.query(sqlSelect,
+                (rs, rc) -> new TagSuggestionDto(rs.getString("tag"), rs.getLong("posts_count")),
+                pattern, limit);
+    }
+}
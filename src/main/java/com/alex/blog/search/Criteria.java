@@ -1,8 +1,33 @@
 package com.alex.blog.search;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 public record Criteria(String title,
                        List<String> tags
 ) {
+
+    public static Criteria fromSearch(String search) {
+        Map<Boolean, List<String>> tokens = Arrays.stream(search.split(" "))
+                .filter(Predicate.not(String::isEmpty))
+                .collect(Collectors.partitioningBy(token -> token.startsWith("#")));
+
+
+        List<String> tags = tokens.get(Boolean.TRUE).stream()
+                .map(t -> t.replace("#", ""))
+                .collect(Collectors.toList());
+
+        String title = tokens.get(Boolean.FALSE).stream()
+                .collect(Collectors.joining(" "));
+
+        return new Criteria(title, tags);
+    }
+
+    public Criteria normalize() {
+        return new Criteria(title == null ? "" : title.trim(),
+                tags == null ? List.of() : tags.stream().distinct().sorted().toList());
+    }
 }
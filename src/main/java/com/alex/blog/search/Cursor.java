@@ -0,0 +1,53 @@
+package com.alex.blog.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque position for keyset (seek) pagination over an id: the post id {@code p.id} of the search
+ * or the comment id of the comments of a post, which are paged forward only.
+ */
+public record Cursor(Direction direction, Long id) {
+
+    public enum Direction {
+        NEXT, PREV
+    }
+
+    private static final String NEXT_PREFIX = "n:";
+    private static final String PREV_PREFIX = "p:";
+
+    public static Cursor first() {
+        return new Cursor(Direction.NEXT, null);
+    }
+
+    public static Cursor after(Long id) {
+        return new Cursor(Direction.NEXT, id);
+    }
+
+    public static Cursor before(Long id) {
+        return new Cursor(Direction.PREV, id);
+    }
+
+    public boolean isForward() {
+        return direction == Direction.NEXT;
+    }
+
+    public String encode() {
+        String raw = (isForward() ? NEXT_PREFIX : PREV_PREFIX) + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Cursor decode(String value) {
+        if (value == null || value.isBlank()) {
+            return first();
+        }
+        String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        if (raw.startsWith(NEXT_PREFIX)) {
+            return after(Long.parseLong(raw.substring(NEXT_PREFIX.length())));
+        }
+        if (raw.startsWith(PREV_PREFIX)) {
+            return before(Long.parseLong(raw.substring(PREV_PREFIX.length())));
+        }
+        throw new IllegalArgumentException("Unknown cursor format: " + value);
+    }
+}
@@ -1,13 +1,17 @@
 package com.alex.blog.search;
 
 import com.alex.blog.api.dto.PostReadDto;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.util.List;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record PostPageDto(
          List<PostReadDto> posts,
          boolean hasPrev,
          boolean hasNext,
-         Integer lastPage
+         Integer lastPage,
+         String next,
+         String prev
 ) {
 }
@@ -15,5 +15,17 @@ public record SearchDto(
 
                         @NotNull(message = "Page size should be not null value")
                         @Positive(message = "Page size should be positive value")
-                        Integer pageSize) {
+                        Integer pageSize,
+
+                        String cursor,
+
+                        Boolean withTotal) {
+
+    public boolean isKeyset() {
+        return cursor != null;
+    }
+
+    public boolean isCounted() {
+        return !Boolean.FALSE.equals(withTotal);
+    }
 }
@@ -0,0 +1,182 @@
+package com.alex.blog.search.index;
+
+import com.alex.blog.api.dto.TagSuggestionDto;
+import com.alex.blog.event.PostCreatedEvent;
+import com.alex.blog.event.PostDeletedEvent;
+import com.alex.blog.event.PostUpdatedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Inverted index tag -> compressed bitmap of post ids, built from {@code posts_tags} at startup
+ * and kept current by the post events of this instance.
+ * The tags are sorted, so the tags of a prefix are one contiguous range for the suggestions.
+ * Until the index is loaded (or when it is disabled) searches and suggestions fall back to SQL.
+ */
+@Component
+@Slf4j
+public class TagBitmapIndex {
+
+    private static final Comparator<TagSuggestionDto> MOST_USED_FIRST =
+            Comparator.comparing(TagSuggestionDto::postsCount).reversed()
+                    .thenComparing(TagSuggestionDto::tag);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private NavigableMap<String, Roaring64Bitmap> postsByTag = new TreeMap<>();
+    private List<Consumer<Map<String, Roaring64Bitmap>>> changesDuringRebuild;
+    private volatile boolean ready;
+
+    public TagBitmapIndex(JdbcTemplate jdbcTemplate,
+                          @Value("${blog.search.tag-index.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        NavigableMap<String, Roaring64Bitmap> loaded = new TreeMap<>();
+        jdbcTemplate.query("SELECT pt.post_id, t.name AS tag FROM posts_tags pt JOIN tags t ON t.id = pt.tag_id", (RowCallbackHandler) rs ->
+                loaded.computeIfAbsent(rs.getString("tag"), tag -> new Roaring64Bitmap())
+                        .addLong(rs.getLong("post_id")));
+        loaded.values().forEach(Roaring64Bitmap::runOptimize);
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(change -> change.accept(loaded));
+            changesDuringRebuild = null;
+            postsByTag = loaded;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("The tag index was built for {} tags", loaded.size());
+    }
+
+    public Optional<Roaring64Bitmap> findPostsWithAllTags(Collection<String> tags) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            List<Roaring64Bitmap> bitmaps = new ArrayList<>();
+            for (String tag : new HashSet<>(tags)) {
+                Roaring64Bitmap postsIds = postsByTag.get(tag);
+                if (postsIds == null) {
+                    return Optional.of(new Roaring64Bitmap());
+                }
+                bitmaps.add(postsIds);
+            }
+            bitmaps.sort(Comparator.comparingLong(Roaring64Bitmap::getLongCardinality));
+
+            Roaring64Bitmap result = new Roaring64Bitmap();
+            result.or(bitmaps.getFirst());
+            bitmaps.stream().skip(1).forEach(result::and);
+            return Optional.of(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<List<TagSuggestionDto>> findMostUsedByPrefix(String prefix, int limit) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        PriorityQueue<TagSuggestionDto> top = new PriorityQueue<>(MOST_USED_FIRST.reversed());
+        lock.readLock().lock();
+        try {
+            postsByTag.subMap(prefix, true, prefix + Character.MAX_VALUE, true).forEach((tag, postsIds) -> {
+                top.add(new TagSuggestionDto(tag, postsIds.getLongCardinality()));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<TagSuggestionDto> suggestions = new ArrayList<>(top);
+        suggestions.sort(MOST_USED_FIRST);
+        return Optional.of(suggestions);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostCreated(PostCreatedEvent event) {
+        addTags(event.postId(), event.tags());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostUpdated(PostUpdatedEvent event) {
+        removeTags(event.postId(), event.oldTags());
+        addTags(event.postId(), event.newTags());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostDeleted(PostDeletedEvent event) {
+        removeTags(event.postId(), event.tags());
+    }
+
+    private void addTags(Long postId, List<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return;
+        }
+        apply(index -> tags.forEach(tag ->
+                index.computeIfAbsent(tag, t -> new Roaring64Bitmap()).addLong(postId)));
+    }
+
+    private void removeTags(Long postId, List<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return;
+        }
+        apply(index -> tags.forEach(tag -> {
+            Roaring64Bitmap postsIds = index.get(tag);
+            if (postsIds != null) {
+                postsIds.removeLong(postId);
+                if (postsIds.isEmpty()) {
+                    index.remove(tag);
+                }
+            }
+        }));
+    }
+
+    private void apply(Consumer<Map<String, Roaring64Bitmap>> change) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            change.accept(postsByTag);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
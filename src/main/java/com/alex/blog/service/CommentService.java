@@ -2,6 +2,8 @@ package com.alex.blog.service;
 
 import com.alex.blog.api.dto.CommentReadDto;
 import com.alex.blog.api.dto.CommentCreateDto;
+import com.alex.blog.api.dto.CommentPageDto;
+import com.alex.blog.api.dto.CommentPageRequestDto;
 import com.alex.blog.api.dto.CommentUpdateDto;
 
 import java.util.List;
@@ -9,7 +11,9 @@ import java.util.List;
 public interface CommentService {
     CommentReadDto findOneComment(Long postId, Long commentId);
     CommentReadDto saveComment(Long postId,CommentCreateDto commentCreateDto);
+    List<CommentReadDto> saveComments(Long postId, List<CommentCreateDto> commentCreateDtos);
     CommentReadDto updateComment(Long postId,Long commentId,CommentUpdateDto commentUpdateDto);
     void deleteComment(Long postId,Long commentId);
     List<CommentReadDto> findCommentsByPostId(Long postId);
+    CommentPageDto findCommentsPageByPostId(Long postId, CommentPageRequestDto commentPageRequestDto);
 }
@@ -5,7 +5,9 @@ public interface MessageKey {
     String COMMENT_NOT_FOUND = "comment.not.found.ex";
     String COMMENT_CREATION_EX = "comment.creation.ex";
     String IMAGE_NOT_FOUND_EX="image.not.found.ex";
+    String IMAGE_SAVING_EX = "image.saving.ex";
     String POST_TITLE_EXISTS_EX="post.title.already.exists.ex";
     String POST_CREATION_EX = "post.creation.ex";
+    String INVALID_CURSOR_EX = "search.cursor.invalid.ex";
 
 }
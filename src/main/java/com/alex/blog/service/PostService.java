@@ -4,10 +4,13 @@ package com.alex.blog.service;
 import com.alex.blog.api.dto.PostCreateDto;
 import com.alex.blog.api.dto.PostReadDto;
 import com.alex.blog.api.dto.PostUpdateDto;
+import com.alex.blog.image.ImageVariant;
+import com.alex.blog.image.PostImage;
 import com.alex.blog.search.PostPageDto;
 import com.alex.blog.search.SearchDto;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.OutputStream;
 import java.util.Optional;
 
 
@@ -15,9 +18,10 @@ public interface PostService {
     PostReadDto findOnePost(Long id);
     Long incrementLikesCount(Long id);
     PostPageDto findPageByCriteria(SearchDto searchDto);
+    void exportByCriteria(String search, OutputStream outputStream);
     PostReadDto updatePost(Long postId,PostUpdateDto postUpdateDto);
     PostReadDto savePost(PostCreateDto postCreateDto);
     void deletePost(Long postId);
-    byte[] getImage(Long postId);
+    PostImage getImage(Long postId, ImageVariant variant);
     boolean updateImage(long postId, MultipartFile file);
 }
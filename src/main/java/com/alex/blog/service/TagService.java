@@ -0,0 +1,9 @@
+package com.alex.blog.service;
+
+import com.alex.blog.api.dto.TagSuggestionDto;
+
+import java.util.List;
+
+public interface TagService {
+    List<TagSuggestionDto> suggestTags(String prefix, int limit);
+}
@@ -2,14 +2,18 @@ package com.alex.blog.service.impl;
 
 import com.alex.blog.aop.annotation.Loggable;
 import com.alex.blog.api.dto.CommentCreateDto;
+import com.alex.blog.api.dto.CommentPageDto;
+import com.alex.blog.api.dto.CommentPageRequestDto;
 import com.alex.blog.api.dto.CommentReadDto;
 import com.alex.blog.api.dto.CommentUpdateDto;
 import com.alex.blog.exception.EntityNotFoundException;
 import com.alex.blog.exception.EntityCreationException;
+import com.alex.blog.exception.InvalidCursorException;
 import com.alex.blog.mapper.CommentMapper;
 import com.alex.blog.model.Comment;
 import com.alex.blog.repository.CommentRepository;
 import com.alex.blog.repository.PostManagementRepository;
+import com.alex.blog.search.Cursor;
 import com.alex.blog.service.CommentService;
 import com.alex.blog.service.MessageKey;
 import lombok.RequiredArgsConstructor;
@@ -46,17 +50,14 @@ public class CommentServiceImpl implements CommentService {
     @Transactional
     @Override
     public CommentReadDto saveComment(Long postId, CommentCreateDto commentCreateDto) {
-        if (!postManagementRepository.existsById(postId)) {
-            throw new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{commentCreateDto.postId()}, Locale.ENGLISH));
-
-        }
-
-        CommentReadDto commentReadDto = Optional.ofNullable(commentCreateDto)
+        Comment comment = Optional.ofNullable(commentCreateDto)
                 .map(commentMapper::toComment)
-                .map(commentRepository::save)
-                .map(commentMapper::toCommentReadDto)
                 .orElseThrow(() -> new EntityCreationException(messageSource.getMessage(MessageKey.COMMENT_CREATION_EX, null, Locale.ENGLISH)));
 
+        CommentReadDto commentReadDto = commentRepository.save(comment)
+                .map(commentMapper::toCommentReadDto)
+                .orElseThrow(() -> new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{commentCreateDto.postId()}, Locale.ENGLISH)));
+
         postManagementRepository.incrementCommentsCount(commentReadDto.postId(), 1L);
 
         return commentReadDto;
@@ -65,41 +66,38 @@ public class CommentServiceImpl implements CommentService {
     @Loggable
     @Transactional
     @Override
-    public CommentReadDto updateComment(Long postId, Long commentId, CommentUpdateDto commentUpdateDto) {
-
-        if (!postManagementRepository.existsById(postId)) {
-            throw new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH));
-        }
-        Optional<Comment> maybeComment = Optional.ofNullable(commentId)
-                .flatMap(commentRepository::findById)
-                .map(comm -> {
-                    commentMapper.updateComment(commentUpdateDto, comm);
-                    return comm;
-                });
-
-        if (maybeComment.isEmpty()) {
-            throw new EntityNotFoundException(messageSource.getMessage(MessageKey.COMMENT_NOT_FOUND, new Object[]{commentId}, Locale.ENGLISH));
+    public List<CommentReadDto> saveComments(Long postId, List<CommentCreateDto> commentCreateDtos) {
+        if (commentCreateDtos.isEmpty()) {
+            return List.of();
         }
+        // the count update is the existence check and locks the post row until the comments are inserted
+        postManagementRepository.incrementCommentsCount(postId, (long) commentCreateDtos.size())
+                .orElseThrow(() -> new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH)));
+
+        List<Comment> comments = commentCreateDtos.stream().map(commentMapper::toComment).toList();
 
-        Comment updatedComment = commentRepository.update(maybeComment.get());
+        return commentRepository.saveAll(comments).stream()
+                .map(commentMapper::toCommentReadDto).toList();
+    }
 
-        return commentMapper.toCommentReadDto(updatedComment);
+    @Loggable
+    @Transactional
+    @Override
+    public CommentReadDto updateComment(Long postId, Long commentId, CommentUpdateDto commentUpdateDto) {
+        Comment comment = new Comment(commentId, commentUpdateDto.text(), postId);
 
+        return commentRepository.update(comment)
+                .map(commentMapper::toCommentReadDto)
+                .orElseThrow(() -> commentOrPostNotFound(postId, commentId));
     }
 
     @Loggable
     @Transactional
     @Override
     public void deleteComment(Long postId, Long commentId) {
-        if (!postManagementRepository.existsById(postId)) {
-            throw new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH));
-        }
-        Optional<Comment> maybeComment = commentRepository.findById(commentId);
-
-        if (maybeComment.isEmpty()) {
-            throw new EntityNotFoundException(messageSource.getMessage(MessageKey.COMMENT_NOT_FOUND, new Object[]{commentId}, Locale.ENGLISH));
+        if (!commentRepository.delete(postId, commentId)) {
+            throw commentOrPostNotFound(postId, commentId);
         }
-        commentRepository.delete(commentId);
         postManagementRepository.incrementCommentsCount(postId, -1L);
 
     }
@@ -113,4 +111,40 @@ public class CommentServiceImpl implements CommentService {
                 .map(commentMapper::toCommentReadDto).toList();
     }
 
+    @Override
+    public CommentPageDto findCommentsPageByPostId(Long postId, CommentPageRequestDto commentPageRequestDto) {
+        if (!postManagementRepository.existsById(postId)) {
+            throw new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH));
+        }
+        Cursor cursor = decodeCursor(commentPageRequestDto.cursor());
+        int limit = commentPageRequestDto.limit();
+
+        List<Comment> comments = commentRepository.findCommentsByPostIdAfter(postId,
+                cursor.id() == null ? 0L : cursor.id(), limit + 1);
+        boolean hasNext = comments.size() > limit;
+        List<Comment> page = hasNext ? comments.subList(0, limit) : comments;
+
+        String next = hasNext ? Cursor.after(page.getLast().getId()).encode() : null;
+        return new CommentPageDto(page.stream().map(commentMapper::toCommentReadDto).toList(), hasNext, next);
+    }
+
+    private Cursor decodeCursor(String value) {
+        try {
+            Cursor cursor = Cursor.decode(value);
+            if (!cursor.isForward()) {
+                throw new IllegalArgumentException("The comments are paged forward only");
+            }
+            return cursor;
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(messageSource.getMessage(MessageKey.INVALID_CURSOR_EX, new Object[]{value}, Locale.ENGLISH), e);
+        }
+    }
+
+    // the post is looked up only after a write has missed, to tell a missing post from a missing comment
+    private EntityNotFoundException commentOrPostNotFound(Long postId, Long commentId) {
+        return postManagementRepository.existsById(postId)
+                ? new EntityNotFoundException(messageSource.getMessage(MessageKey.COMMENT_NOT_FOUND, new Object[]{commentId}, Locale.ENGLISH))
+                : new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH));
+    }
+
 }
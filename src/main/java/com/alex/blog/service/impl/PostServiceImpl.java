@@ -1,33 +1,48 @@
 package com.alex.blog.service.impl;
 
 import com.alex.blog.aop.annotation.Loggable;
+import com.alex.blog.cache.ImageCache;
+import com.alex.blog.cache.PostCache;
+import com.alex.blog.cache.PostPageCache;
+import com.alex.blog.counter.LikesWriteBehindBuffer;
 import com.alex.blog.api.dto.PostCreateDto;
 import com.alex.blog.api.dto.PostReadDto;
 import com.alex.blog.api.dto.PostUpdateDto;
 import com.alex.blog.exception.*;
+import com.alex.blog.image.ImageStorage;
+import com.alex.blog.image.ImageVariant;
+import com.alex.blog.image.ImageVariantGenerator;
+import com.alex.blog.image.PostImage;
 import com.alex.blog.mapper.PostMapper;
+import com.alex.blog.model.ImageMetadata;
 import com.alex.blog.model.Post;
-import com.alex.blog.repository.CommentRepository;
+import com.alex.blog.repository.ImageRepository;
 import com.alex.blog.repository.PostManagementRepository;
 import com.alex.blog.repository.PostSearchRepository;
 import com.alex.blog.search.Criteria;
+import com.alex.blog.search.Cursor;
 import com.alex.blog.search.PostPageDto;
 import com.alex.blog.search.SearchDto;
 import com.alex.blog.service.MessageKey;
 import com.alex.blog.service.PostService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import org.springframework.context.MessageSource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.OutputStream;
 import java.util.*;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -36,16 +51,21 @@ public class PostServiceImpl implements PostService {
     private final PostManagementRepository postManagementRepository;
     private final PostSearchRepository postSearchRepository;
     private final PostMapper postMapper;
-    private final CommentRepository commentRepository;
     private final MessageSource messageSource;
-    private final Integer MAX_LENGTH_TXT = 128;
+    private final PostPageCache postPageCache;
+    private final PostCache postCache;
+    private final ImageCache imageCache;
+    private final ObjectMapper objectMapper;
+    private final LikesWriteBehindBuffer likesWriteBehindBuffer;
+    private final ImageStorage imageStorage;
+    private final ImageRepository imageRepository;
+    private final ImageVariantGenerator imageVariantGenerator;
 
 
     @Override
     @Loggable
     public PostReadDto findOnePost(Long postId) {
-        return postSearchRepository.findPostById(postId)
-                .map(postMapper::toPostReadDto)
+        return postCache.getOrLoad(postId, id -> postSearchRepository.findPostById(id).map(postMapper::toPostReadDto))
                 .orElseThrow(() -> new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH)));
 
     }
@@ -54,46 +74,73 @@ public class PostServiceImpl implements PostService {
     @Override
     @Loggable
     public Long incrementLikesCount(Long postId) {
-        if (!postManagementRepository.existsById(postId)) {
-            throw new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH));
+        if (likesWriteBehindBuffer.isEnabled()) {
+            return likesWriteBehindBuffer.increment(postId)
+                    .orElseThrow(() -> new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH)));
         }
-        return postManagementRepository.incrementLikesCount(postId);
+        return postManagementRepository.incrementLikesCount(postId)
+                .orElseThrow(() -> new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH)));
     }
 
     @Override
     @Loggable
     public PostPageDto findPageByCriteria(SearchDto searchDto) {
-        Map<Boolean, List<String>> tokens = Arrays.stream(searchDto.search().split(" "))
-                .filter(Predicate.not(String::isEmpty))
-                .collect(Collectors.partitioningBy(token -> token.startsWith("#")));
+        return postPageCache.getOrLoad(searchDto, () -> findPageByCriteria(Criteria.fromSearch(searchDto.search()), searchDto));
+    }
 
+    @Override
+    public void exportByCriteria(String search, OutputStream outputStream) {
+        postSearchRepository.exportPostsByCriteria(Criteria.fromSearch(search), post -> writeLine(post, outputStream));
+    }
 
-        List<String> tags = tokens.get(Boolean.TRUE).stream()
-                .map(t -> t.replace("#", ""))
-                .collect(Collectors.toList());
+    @SneakyThrows
+    private void writeLine(Post post, OutputStream outputStream) {
+        outputStream.write(objectMapper.writeValueAsBytes(postMapper.toPostReadDto(post)));
+        outputStream.write('\n');
+    }
 
-        String title = tokens.get(Boolean.FALSE).stream()
-                .collect(Collectors.joining(" "));
+    private PostPageDto findPageByCriteria(Criteria criteria, SearchDto searchDto) {
 
+        if (searchDto.isKeyset()) {
+            return findPageByCursor(criteria, searchDto);
+        }
 
         Pageable pageable = PageRequest.of(searchDto.pageNumber() - 1, searchDto.pageSize());
-        Criteria criteria = new Criteria(title, tags);
+        if (!searchDto.isCounted()) {
+            Slice<Post> slice = postSearchRepository.findSliceByCriteriaAndPageable(criteria, pageable);
+            markTruncatedTexts(slice.getContent());
+            return buildPostPageDto(slice);
+        }
         Page<Post> page = postSearchRepository.findPostsByCriteriaAndPageable(criteria, pageable);
 
 
-        page.stream()
-                .filter(p -> p.getText().length() > 128)
-                .forEach(post -> {
-                    String originText = post.getText();
-                    post.setText(truncateText(originText, MAX_LENGTH_TXT));
-                });
+        markTruncatedTexts(page.getContent());
 
 
         return buildPostPageDto(page);
     }
 
-    private String truncateText(String text, Integer length) {
-        return text.substring(0, length).concat("...");
+    private PostPageDto findPageByCursor(Criteria criteria, SearchDto searchDto) {
+        Cursor cursor = decodeCursor(searchDto.cursor());
+        Slice<Post> slice = postSearchRepository.findPostsByCriteriaAndCursor(criteria, cursor, searchDto.pageSize());
+
+        markTruncatedTexts(slice.getContent());
+
+        return buildPostPageDto(slice, cursor);
+    }
+
+    private Cursor decodeCursor(String value) {
+        try {
+            return Cursor.decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(messageSource.getMessage(MessageKey.INVALID_CURSOR_EX, new Object[]{value}, Locale.ENGLISH), e);
+        }
+    }
+
+    private void markTruncatedTexts(List<Post> posts) {
+        posts.stream()
+                .filter(Post::isTextTruncated)
+                .forEach(post -> post.setText(post.getText().concat("...")));
     }
 
     @Override
@@ -113,53 +160,104 @@ public class PostServiceImpl implements PostService {
 
     @Transactional
     public void deletePost(Long postId) {
-        if (!postManagementRepository.existsById(postId)) {
+        // the comments are deleted by the foreign key cascade, the image by the orphan image sweeper
+        imageRepository.releaseImage(postId);
+        if (!postManagementRepository.delete(postId)) {
             throw new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH));
         }
-        postManagementRepository.delete(postId);
-        commentRepository.deleteByPostId(postId);
     }
 
     @Override
-    public byte[] getImage(Long postId) {
+    public PostImage getImage(Long postId, ImageVariant variant) {
         if (!postManagementRepository.existsById(postId)) {
             throw new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH));
         }
 
-        return postManagementRepository.getImage(postId)
+        return imageCache.getOrLoad(postId, variant, () -> loadImage(postId, variant));
+    }
+
+    private PostImage loadImage(Long postId, ImageVariant variant) {
+        ImageMetadata metadata = imageRepository.findImageMetadata(postId)
                 .orElseThrow(() -> new ImageNotFoundException(messageSource.getMessage(MessageKey.IMAGE_NOT_FOUND_EX, new Object[]{postId}, Locale.ENGLISH)));
+        if (variant == ImageVariant.ORIGINAL) {
+            return new PostImage(imageStorage.open(postId, metadata), metadata, false);
+        }
+        if (metadata.hash() == null) {
+            // no variant is generated of an image saved before its hash was recorded
+            return new PostImage(imageStorage.open(postId, metadata), metadata, true);
+        }
+        Optional<Resource> variantImage = imageStorage.openVariant(postId, metadata, variant);
+        if (variantImage.isPresent()) {
+            // a variant is generated from the original, so it changes with it
+            ImageMetadata variantMetadata = new ImageMetadata(metadata.path(), metadata.hash() + "-" + variant.key(),
+                    ImageVariantGenerator.CONTENT_TYPE, metadata.updatedAt());
+            return new PostImage(variantImage.get(), variantMetadata, false);
+        }
+        imageVariantGenerator.enqueue(postId);
+        return new PostImage(imageStorage.open(postId, metadata), metadata, true);
     }
 
 
-    @SneakyThrows
     @Override
     @Transactional
     public boolean updateImage(long postId, MultipartFile image) {
-        if (!postManagementRepository.existsById(postId)) {
-            throw new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH));
-        }
+        // the multipart part is held in memory up to spring.servlet.multipart.file-size-threshold and in a temporary file above it,
+        // so the storage may read it twice
+        String hash = imageStorage.save(postId, image, image.getSize())
+                .orElseThrow(() -> new EntityNotFoundException(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{postId}, Locale.ENGLISH)));
+        imageRepository.updateImageMetadata(postId, hash, contentTypeOf(image));
+        return true;
+    }
 
-        return postManagementRepository.updateImage(postId, image.getBytes());
+    // the declared type is served back only when it is an image, else the type of the file name extension
+    private static String contentTypeOf(MultipartFile image) {
+        try {
+            MediaType contentType = MediaType.parseMediaType(image.getContentType());
+            if ("image".equals(contentType.getType())) {
+                return contentType.toString();
+            }
+        } catch (InvalidMediaTypeException ignored) {
+            // missing or malformed, the file name is tried
+        }
+        return MediaTypeFactory.getMediaType(image.getOriginalFilename())
+                .filter(contentType -> "image".equals(contentType.getType()))
+                .map(MediaType::toString)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE);
     }
 
     @Transactional
     @Override
     public PostReadDto savePost(PostCreateDto postCreateDto) {
-        if (postManagementRepository.existsByTitle(postCreateDto.title())) {
-            throw new TitleAlreadyExistsException(messageSource.getMessage(MessageKey.POST_TITLE_EXISTS_EX, new Object[]{postCreateDto.title()}, Locale.ENGLISH));
-        }
-
-
-        return Optional.ofNullable(postCreateDto)
+        Post post = Optional.ofNullable(postCreateDto)
                 .map(postMapper::toPost)
-                .map(postManagementRepository::save)
-                .map(postMapper::toPostReadDto)
                 .orElseThrow(() -> new EntityCreationException(messageSource.getMessage(MessageKey.POST_CREATION_EX, null, Locale.ENGLISH)));
+
+        return postManagementRepository.save(post)
+                .map(postMapper::toPostReadDto)
+                .orElseThrow(() -> new TitleAlreadyExistsException(messageSource.getMessage(MessageKey.POST_TITLE_EXISTS_EX, new Object[]{postCreateDto.title()}, Locale.ENGLISH)));
     }
 
     private PostPageDto buildPostPageDto(Page<Post> page) {
         List<PostReadDto> content = page.getContent().stream().map(postMapper::toPostReadDto).toList();
-        return new PostPageDto(content, page.hasPrevious(), page.hasNext(), page.getTotalPages() - 1);
+        return new PostPageDto(content, page.hasPrevious(), page.hasNext(), page.getTotalPages() - 1, null, null);
+    }
+
+    private PostPageDto buildPostPageDto(Slice<Post> slice) {
+        List<PostReadDto> content = slice.getContent().stream().map(postMapper::toPostReadDto).toList();
+        return new PostPageDto(content, slice.hasPrevious(), slice.hasNext(), null, null, null);
+    }
+
+    private PostPageDto buildPostPageDto(Slice<Post> slice, Cursor cursor) {
+        List<Post> posts = slice.getContent();
+        List<PostReadDto> content = posts.stream().map(postMapper::toPostReadDto).toList();
+
+        boolean hasNext = cursor.isForward() ? slice.hasNext() : cursor.id() != null;
+        boolean hasPrev = cursor.isForward() ? cursor.id() != null : slice.hasNext();
+
+        String next = hasNext && !posts.isEmpty() ? Cursor.after(posts.getLast().getId()).encode() : null;
+        String prev = hasPrev && !posts.isEmpty() ? Cursor.before(posts.getFirst().getId()).encode() : null;
+
+        return new PostPageDto(content, prev != null, next != null, null, next, prev);
     }
 
 
@@ -0,0 +1,38 @@
+package com.alex.blog.service.impl;
+
+import com.alex.blog.aop.annotation.Loggable;
+import com.alex.blog.api.dto.TagSuggestionDto;
+import com.alex.blog.repository.TagRepository;
+import com.alex.blog.search.index.TagBitmapIndex;
+import com.alex.blog.service.TagService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Service
+@Transactional(readOnly = true)
+public class TagServiceImpl implements TagService {
+    private final TagRepository tagRepository;
+    private final TagBitmapIndex tagBitmapIndex;
+    private final int maxSuggestions;
+
+    public TagServiceImpl(TagRepository tagRepository,
+                          TagBitmapIndex tagBitmapIndex,
+                          @Value("${blog.tags.suggest.max-limit:50}") int maxSuggestions) {
+        this.tagRepository = tagRepository;
+        this.tagBitmapIndex = tagBitmapIndex;
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    @Loggable
+    @Override
+    public List<TagSuggestionDto> suggestTags(String prefix, int limit) {
+        String tagPrefix = prefix.startsWith("#") ? prefix.substring(1) : prefix;
+        int boundedLimit = Math.clamp(limit, 1, maxSuggestions);
+
+        return tagBitmapIndex.findMostUsedByPrefix(tagPrefix, boundedLimit)
+                .orElseGet(() -> tagRepository.findMostUsedByPrefix(tagPrefix, boundedLimit));
+    }
+}
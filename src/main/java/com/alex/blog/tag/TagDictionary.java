@@ -0,0 +1,142 @@
+package com.alex.blog.tag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tag name <-> id of the {@code tags} table, loaded at startup and completed by the names and ids it meets later,
+ * so the posts refer to their tags by id without joining {@code tags}. A tag is never renamed or deleted,
+ * so a known pair never gets outdated and nothing is evicted.
+ * A new name is inserted in the transaction of the post. The pairs read in a transaction are remembered only after
+ * its commit, so the id of a tag rolled back with its post is never kept and the name is looked up again on its next use.
+ */
+@Component
+@Slf4j
+public class TagDictionary {
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+
+    public TagDictionary(JdbcTemplate jdbcTemplate) {
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        namedParameterJdbcTemplate.getJdbcTemplate().query("SELECT id, name FROM tags",
+                (RowCallbackHandler) rs -> put(rs.getInt("id"), rs.getString("name")));
+        log.info("The tag dictionary was loaded with {} tags", idsByName.size());
+    }
+
+    /**
+     * @return the ids of the existing tags, a name without a tag has no posts
+     */
+    public Map<String, Integer> findIds(Collection<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> unknownNames = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(names)) {
+            Integer id = idsByName.get(name);
+            if (id != null) {
+                ids.put(name, id);
+            } else {
+                unknownNames.add(name);
+            }
+        }
+        if (!unknownNames.isEmpty()) {
+            ids.putAll(select("SELECT id, name FROM tags WHERE name IN (:values)", unknownNames).idsByName);
+        }
+        return ids;
+    }
+
+    /**
+     * @return the ids of the tags, the missing ones are inserted
+     */
+    public Map<String, Integer> findOrCreateIds(Collection<String> names) {
+        Map<String, Integer> ids = findIds(names);
+        // sorted, so the concurrent posts with the same new tags lock them in the same order
+        List<String> newNames = names.stream()
+                .distinct()
+                .filter(name -> !ids.containsKey(name))
+                .sorted()
+                .toList();
+        if (!newNames.isEmpty()) {
+            SqlParameterSource[] batchArgs = newNames.stream()
+                    .map(name -> new MapSqlParameterSource("name", name))
+                    .toArray(SqlParameterSource[]::new);
+            // inserted by a concurrent post with the same new tag in the meantime
+            String sqlInsert = """
+                    INSERT INTO tags (name)
+                    VALUES (:name)
+                    ON CONFLICT DO NOTHING
+                    """;
+            namedParameterJdbcTemplate.batchUpdate(sqlInsert, batchArgs);
+            ids.putAll(select("SELECT id, name FROM tags WHERE name IN (:values)", newNames).idsByName);
+        }
+        return ids;
+    }
+
+    /**
+     * @return the names of the existing tags
+     */
+    public Map<Integer, String> findNames(Collection<Integer> ids) {
+        Map<Integer, String> names = new HashMap<>();
+        List<Integer> unknownIds = new ArrayList<>();
+        for (Integer id : new LinkedHashSet<>(ids)) {
+            String name = namesById.get(id);
+            if (name != null) {
+                names.put(id, name);
+            } else {
+                unknownIds.add(id);
+            }
+        }
+        if (!unknownIds.isEmpty()) {
+            names.putAll(select("SELECT id, name FROM tags WHERE id IN (:values)", unknownIds).namesById);
+        }
+        return names;
+    }
+
+    // the tags created by other instances are learnt here
+    private Selected select(String sqlSelect, Collection<?> values) {
+        Selected selected = new Selected(new HashMap<>(), new HashMap<>());
+        namedParameterJdbcTemplate.query(sqlSelect, new MapSqlParameterSource("values", values), (RowCallbackHandler) rs -> {
+            int id = rs.getInt("id");
+            String name = rs.getString("name");
+            selected.idsByName.put(name, id);
+            selected.namesById.put(id, name);
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a tag inserted by the transaction itself is known only if it commits
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    selected.idsByName.forEach((name, id) -> put(id, name));
+                }
+            });
+        } else {
+            selected.idsByName.forEach((name, id) -> put(id, name));
+        }
+        return selected;
+    }
+
+    private void put(Integer id, String name) {
+        idsByName.put(name, id);
+        namesById.put(id, name);
+    }
+
+    private record Selected(Map<String, Integer> idsByName, Map<Integer, String> namesById) {
+    }
+}
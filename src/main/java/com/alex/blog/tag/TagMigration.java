@@ -0,0 +1,89 @@
+package com.alex.blog.tag;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+
+/**
+ * Converts the tag names of {@code post_tags} of the previous releases into {@code tags} and {@code posts_tags}
+ * when the application starts, before it serves requests. The posts are converted in batches, every batch
+ * in a short transaction of its own, and their {@code post_tags} rows are deleted.
+ * The previous releases read and write only {@code post_tags}, so all their instances have to be stopped
+ * before the first instance of this release starts: an instance left running would lose the tags of the converted
+ * posts, and its later tag changes would be merged into {@code posts_tags} by the next start without the removals.
+ */
+@Component
+@Slf4j
+public class TagMigration {
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionOperations transactionOperations;
+    private final int batchSize;
+
+    public TagMigration(JdbcTemplate jdbcTemplate,
+                        TransactionOperations transactionOperations,
+                        @Value("${blog.tags.migration-batch-size:500}") int batchSize) {
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionOperations = transactionOperations;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void onStartup() {
+        int migrated = migrate();
+        if (migrated > 0) {
+            log.info("The tags of {} posts were moved to posts_tags", migrated);
+        }
+    }
+
+    /**
+     * @return the number of converted posts
+     */
+    public int migrate() {
+        String sqlSelect = """
+                SELECT DISTINCT post_id FROM post_tags
+                ORDER BY post_id
+                LIMIT :limit
+                """;
+        int migrated = 0;
+        List<Long> postIds = namedParameterJdbcTemplate.queryForList(sqlSelect, new MapSqlParameterSource("limit", batchSize), Long.class);
+        while (!postIds.isEmpty()) {
+            MapSqlParameterSource params = new MapSqlParameterSource("postIds", postIds);
+            transactionOperations.executeWithoutResult(status -> migrate(params));
+            migrated += postIds.size();
+            postIds = namedParameterJdbcTemplate.queryForList(sqlSelect, new MapSqlParameterSource("limit", batchSize), Long.class);
+        }
+        return migrated;
+    }
+
+    private void migrate(MapSqlParameterSource params) {
+        String sqlInsertTags = """
+                INSERT INTO tags (name)
+                SELECT DISTINCT tag FROM post_tags
+                WHERE post_id IN (:postIds)
+                ON CONFLICT DO NOTHING
+                """;
+        String sqlInsertPostsTags = """
+                INSERT INTO posts_tags (post_id, tag_id)
+                SELECT pt.post_id, t.id
+                FROM post_tags pt
+                JOIN tags t ON t.name = pt.tag
+                WHERE pt.post_id IN (:postIds)
+                ON CONFLICT DO NOTHING
+                """;
+        String sqlDelete = """
+                DELETE FROM post_tags
+                WHERE post_id IN (:postIds)
+                """;
+        namedParameterJdbcTemplate.update(sqlInsertTags, params);
+        namedParameterJdbcTemplate.update(sqlInsertPostsTags, params);
+        namedParameterJdbcTemplate.update(sqlDelete, params);
+    }
+}
@@ -15,6 +15,7 @@ CREATE TABLE IF NOT EXISTS posts
 );
 
 
+-- the tag names of the previous releases, moved to posts_tags by TagMigration at startup (not while they run)
 CREATE TABLE IF NOT EXISTS post_tags
 (
     post_id BIGINT NOT NULL,
@@ -24,6 +25,29 @@ CREATE TABLE IF NOT EXISTS post_tags
     CONSTRAINT pk_posts_tags PRIMARY KEY (post_id, tag)
 );
 
+-- every tag name once, never renamed or deleted, so its id is cached forever by TagDictionary
+CREATE TABLE IF NOT EXISTS tags
+(
+    id   INTEGER GENERATED ALWAYS AS IDENTITY NOT NULL,
+    name VARCHAR(256)                         NOT NULL,
+
+    CONSTRAINT pk_tags PRIMARY KEY (id),
+    CONSTRAINT uk_tags_tag_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS posts_tags
+(
+    post_id BIGINT  NOT NULL,
+    tag_id  INTEGER NOT NULL,
+
+    CONSTRAINT fk_posts_tags_ids_posts FOREIGN KEY (post_id) REFERENCES posts (id) ON DELETE CASCADE,
+    CONSTRAINT fk_posts_tags_ids_tags FOREIGN KEY (tag_id) REFERENCES tags (id),
+    CONSTRAINT pk_posts_tags_ids PRIMARY KEY (post_id, tag_id)
+);
+
+-- the posts of a tag filter are read from the index only
+CREATE INDEX IF NOT EXISTS idx_posts_tags_tag_id_post_id ON posts_tags (tag_id, post_id);
+
 
 
 
@@ -36,4 +60,77 @@ CREATE TABLE IF NOT EXISTS comments
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
 
     CONSTRAINT pk_comments PRIMARY KEY (id)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS idx_comments_post_id_id ON comments (post_id, id);
+
+ALTER TABLE posts
+    ADD COLUMN IF NOT EXISTS search_vector tsvector
+        GENERATED ALWAYS AS (setweight(to_tsvector('simple', title), 'A') ||
+                             setweight(to_tsvector('simple', left(text, 262144)), 'B')) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_posts_search_vector ON posts USING GIN (search_vector);
+
+-- path of the image file relative to blog.images.filesystem.root, see blog.images.storage
+ALTER TABLE posts
+    ADD COLUMN IF NOT EXISTS image_path VARCHAR(512);
+
+-- the images are not compressed, so substring() of a Range request reads only the TOAST chunks of the range
+ALTER TABLE posts
+    ALTER COLUMN image SET STORAGE EXTERNAL;
+
+-- recorded on upload, the ETag and Last-Modified of the image are answered without reading it
+ALTER TABLE posts
+    ADD COLUMN IF NOT EXISTS image_hash         VARCHAR(64),
+    ADD COLUMN IF NOT EXISTS image_content_type VARCHAR(128),
+    ADD COLUMN IF NOT EXISTS image_updated_at   TIMESTAMP WITH TIME ZONE;
+
+
+CREATE TABLE IF NOT EXISTS post_like_shards
+(
+    post_id BIGINT  NOT NULL,
+    slot    INTEGER NOT NULL,
+    likes   BIGINT  NOT NULL DEFAULT 0,
+
+    CONSTRAINT fk_post_like_shards_posts FOREIGN KEY (post_id) REFERENCES posts (id) ON DELETE CASCADE,
+    CONSTRAINT pk_post_like_shards PRIMARY KEY (post_id, slot)
+);
+
+-- resized images of posts.image, outdated when source_hash is not the image_hash of the post any more
+CREATE TABLE IF NOT EXISTS post_image_variants
+(
+    post_id     BIGINT      NOT NULL,
+    variant     VARCHAR(16) NOT NULL,
+    source_hash VARCHAR(64) NOT NULL,
+    image       BYTEA       NOT NULL,
+
+    CONSTRAINT fk_post_image_variants_posts FOREIGN KEY (post_id) REFERENCES posts (id) ON DELETE CASCADE,
+    CONSTRAINT pk_post_image_variants PRIMARY KEY (post_id, variant)
+);
+
+-- each distinct image once, a post points to it by image_hash when its own posts.image is NULL,
+-- ref_count is the number of such posts, the rows left at 0 are deleted by the orphan image sweeper
+CREATE TABLE IF NOT EXISTS images
+(
+    hash      VARCHAR(64) NOT NULL,
+    -- NULL for the file system storage, the file is named by the hash
+    image     BYTEA,
+    ref_count BIGINT      NOT NULL DEFAULT 0,
+
+    CONSTRAINT pk_images PRIMARY KEY (hash),
+    CONSTRAINT chk_images_ref_count CHECK (ref_count >= 0)
+);
+
+ALTER TABLE images
+    ALTER COLUMN image SET STORAGE EXTERNAL;
+
+CREATE INDEX IF NOT EXISTS idx_images_orphans ON images (hash) WHERE ref_count = 0;
+
+-- the references of the image files saved before the counting, inserted once
+INSERT INTO images (hash, ref_count)
+SELECT image_hash, count(*)
+FROM posts
+WHERE image IS NULL
+  AND image_hash IS NOT NULL
+GROUP BY image_hash
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,85 @@
+package com.alex.blog.benchmark;
+
+import com.alex.blog.cache.LivePostIdsCache;
+import com.alex.blog.repository.PostManagementRepository;
+import com.alex.blog.repository.impl.JdbcNativePostManagementRepositoryImpl;
+import com.alex.blog.tag.TagDictionary;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Likes per second of a single post against the database of application.yaml (DB_HOST, DB_PORT, ...),
+ * run with {@code ./gradlew benchmark}. With the shards the throughput should grow with the clients,
+ * without them it stays flat because every like waits for the lock of the same post row.
+ */
+@Tag("benchmark")
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LikesThroughputBenchmark {
+
+    private static final long DURATION_MILLIS = 5_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @ParameterizedTest(name = "shards={0}, clients={1}")
+    @CsvSource({
+            "0,1", "0,4", "0,16", "0,64",
+            "16,1", "16,4", "16,16", "16,64"
+    })
+    void incrementLikesCount_throughputOfOnePost(int likeShards, int clients) throws Exception {
+        PostManagementRepository repository = new JdbcNativePostManagementRepositoryImpl(jdbcTemplate,
+                namedParameterJdbcTemplate, mock(ApplicationEventPublisher.class), new LivePostIdsCache(jdbcTemplate, false, Duration.ZERO),
+                new TagDictionary(jdbcTemplate), likeShards);
+        Long postId = jdbcTemplate.queryForObject("INSERT INTO posts (title, text) VALUES (?, 'benchmark') RETURNING id",
+                Long.class, "likes benchmark " + System.nanoTime());
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long deadline = System.currentTimeMillis() + DURATION_MILLIS;
+        List<Future<Long>> likes = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            likes.add(executor.submit(() -> {
+                long count = 0;
+                while (System.currentTimeMillis() < deadline) {
+                    repository.incrementLikesCount(postId);
+                    count++;
+                }
+                return count;
+            }));
+        }
+        long total = 0;
+        for (Future<Long> clientLikes : likes) {
+            total += clientLikes.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+        repository.compactLikeShards(Integer.MAX_VALUE);
+
+        System.out.printf("shards=%d clients=%d likes/s=%d%n", likeShards, clients, total * 1000 / DURATION_MILLIS);
+        Assertions.assertThat(repository.findLikesCount(postId)).hasValue(total);
+        jdbcTemplate.update("DELETE FROM posts WHERE id = ?", postId);
+    }
+}
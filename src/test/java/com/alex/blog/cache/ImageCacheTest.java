@@ -0,0 +1,109 @@
+package com.alex.blog.cache;
+
+import com.alex.blog.event.PostDeletedEvent;
+import com.alex.blog.event.PostImageUpdatedEvent;
+import com.alex.blog.image.ImageVariant;
+import com.alex.blog.image.PostImage;
+import com.alex.blog.model.ImageMetadata;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+class ImageCacheTest {
+    private final static Long VALID_ID = 1L;
+    private final static byte[] image = new byte[]{(byte) 137, 80, 78, 71};
+    private final static ImageMetadata metadata = new ImageMetadata(null, "abcd", "image/png", Instant.now());
+
+    private ImageCache imageCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        imageCache = new ImageCache(DataSize.ofKilobytes(1), DataSize.ofBytes(4), Duration.ofMinutes(1), new SimpleMeterRegistry());
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void getOrLoad_shouldCacheImageRequestedAgainAndServeCopyOutsideHeap() throws IOException {
+        PostImage first = imageCache.getOrLoad(VALID_ID, ImageVariant.ORIGINAL, () -> load(image, false));
+        imageCache.getOrLoad(VALID_ID, ImageVariant.ORIGINAL, () -> load(image, false));
+        PostImage actual = imageCache.getOrLoad(VALID_ID, ImageVariant.ORIGINAL, () -> load(image, false));
+
+        Assertions.assertThat(loads).hasValue(2);
+        Assertions.assertThat(first.content()).isInstanceOf(ByteArrayResource.class);
+        Assertions.assertThat(actual.metadata()).isEqualTo(metadata);
+        Assertions.assertThat(actual.content()).isInstanceOf(ByteBufferResource.class);
+        Assertions.assertThat(actual.content().contentLength()).isEqualTo(image.length);
+        Assertions.assertThat(actual.content().getContentAsByteArray()).isEqualTo(image);
+        try (InputStream range = actual.content().getInputStream()) {
+            Assertions.assertThat(range.skip(2)).isEqualTo(2);
+            Assertions.assertThat(range.readAllBytes()).containsExactly(78, 71);
+        }
+    }
+
+    @Test
+    void getOrLoad_shouldNotCacheSubstituteOrTooLargeImage() {
+        List.of(1, 2, 3).forEach(i -> {
+            imageCache.getOrLoad(VALID_ID, ImageVariant.THUMB, () -> load(image, true));
+            imageCache.getOrLoad(VALID_ID, ImageVariant.ORIGINAL, () -> load(new byte[]{1, 2, 3, 4, 5}, false));
+        });
+
+        Assertions.assertThat(loads).hasValue(6);
+    }
+
+    @Test
+    void getOrLoad_shouldReloadExpiredImage() {
+        imageCache = new ImageCache(DataSize.ofKilobytes(1), DataSize.ofBytes(4), Duration.ZERO, new SimpleMeterRegistry());
+
+        List.of(1, 2, 3).forEach(i -> imageCache.getOrLoad(VALID_ID, ImageVariant.ORIGINAL, () -> load(image, false)));
+
+        Assertions.assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void onPostImageUpdatedOrDeleted_shouldEvictAllVariantsOfPost() {
+        requestTwice(ImageVariant.ORIGINAL);
+        requestTwice(ImageVariant.THUMB);
+
+        imageCache.onPostImageUpdated(new PostImageUpdatedEvent(VALID_ID));
+        requestTwice(ImageVariant.ORIGINAL);
+        requestTwice(ImageVariant.THUMB);
+        imageCache.onPostDeleted(new PostDeletedEvent(VALID_ID, List.of()));
+        imageCache.getOrLoad(VALID_ID, ImageVariant.ORIGINAL, () -> load(image, false));
+        imageCache.getOrLoad(VALID_ID, ImageVariant.THUMB, () -> load(image, false));
+
+        Assertions.assertThat(loads).hasValue(10);
+    }
+
+    @Test
+    void getOrLoad_shouldAlwaysLoadWhenDisabled() {
+        imageCache = new ImageCache(DataSize.ofBytes(0), DataSize.ofBytes(4), Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+        imageCache.getOrLoad(VALID_ID, ImageVariant.ORIGINAL, () -> load(image, false));
+        PostImage actual = imageCache.getOrLoad(VALID_ID, ImageVariant.ORIGINAL, () -> load(image, false));
+
+        Assertions.assertThat(loads).hasValue(2);
+        Assertions.assertThat(actual.content()).isInstanceOf(ByteArrayResource.class);
+    }
+
+    private void requestTwice(ImageVariant variant) {
+        imageCache.getOrLoad(VALID_ID, variant, () -> load(image, false));
+        imageCache.getOrLoad(VALID_ID, variant, () -> load(image, false));
+    }
+
+    private PostImage load(byte[] content, boolean substitute) {
+        loads.incrementAndGet();
+        return new PostImage(new ByteArrayResource(content), metadata, substitute);
+    }
+}
@@ -0,0 +1,99 @@
+package com.alex.blog.cache;
+
+import com.alex.blog.api.dto.PostReadDto;
+import com.alex.blog.event.CommentsCountChangedEvent;
+import com.alex.blog.event.PostImageUpdatedEvent;
+import com.alex.blog.event.PostUpdatedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+class PostCacheTest {
+    private final static Long VALID_ID = 1L;
+    private final static Long INVALID_ID = 10000L;
+    private final static PostReadDto post = new PostReadDto(VALID_ID, "test title1", "test desc1", List.of("test_tag1"), 2L, 3L);
+
+    private SimpleMeterRegistry meterRegistry;
+    private PostCache postCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        postCache = new PostCache(100, Duration.ofMinutes(1), meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void getOrLoad_shouldLoadOnceAndPublishHitRatio() {
+        postCache.getOrLoad(VALID_ID, this::load);
+        Optional<PostReadDto> actual = postCache.getOrLoad(VALID_ID, this::load);
+
+        Assertions.assertThat(actual).hasValue(post);
+        Assertions.assertThat(loads).hasValue(1);
+        Assertions.assertThat(meterRegistry.get("cache.hit.ratio").tag("cache", "posts").gauge().value()).isEqualTo(0.5);
+        Assertions.assertThat(meterRegistry.get("cache.load.duration").tag("cache", "posts").timeGauge()).isNotNull();
+    }
+
+    @Test
+    void getOrLoad_shouldNotCacheMissingPost() {
+        postCache.getOrLoad(INVALID_ID, this::load);
+        Optional<PostReadDto> actual = postCache.getOrLoad(INVALID_ID, this::load);
+
+        Assertions.assertThat(actual).isEmpty();
+        Assertions.assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void getOrLoad_shouldReloadExpiredPost() {
+        postCache = new PostCache(100, Duration.ZERO, meterRegistry);
+
+        postCache.getOrLoad(VALID_ID, this::load);
+        postCache.getOrLoad(VALID_ID, this::load);
+
+        Assertions.assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void onPostUpdated_shouldEvictPost() {
+        postCache.getOrLoad(VALID_ID, this::load);
+
+        postCache.onPostUpdated(new PostUpdatedEvent(VALID_ID, List.of("test_tag1"), List.of("test_tag2")));
+        postCache.getOrLoad(VALID_ID, this::load);
+
+        Assertions.assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void onPostImageUpdated_shouldEvictPost() {
+        postCache.getOrLoad(VALID_ID, this::load);
+
+        postCache.onPostImageUpdated(new PostImageUpdatedEvent(VALID_ID));
+        postCache.getOrLoad(VALID_ID, this::load);
+
+        Assertions.assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void onCommentsCountChanged_shouldPatchCachedPost() {
+        postCache.getOrLoad(VALID_ID, this::load);
+
+        postCache.onCommentsCountChanged(new CommentsCountChangedEvent(VALID_ID, 10L));
+        Optional<PostReadDto> actual = postCache.getOrLoad(VALID_ID, this::load);
+
+        Assertions.assertThat(loads).hasValue(1);
+        Assertions.assertThat(actual).hasValueSatisfying(patched -> Assertions.assertThat(patched.commentsCount()).isEqualTo(10L));
+    }
+
+    private Optional<PostReadDto> load(Long postId) {
+        loads.incrementAndGet();
+        return VALID_ID.equals(postId) ? Optional.of(post) : Optional.empty();
+    }
+}
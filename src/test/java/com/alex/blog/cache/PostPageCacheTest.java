@@ -0,0 +1,92 @@
+package com.alex.blog.cache;
+
+import com.alex.blog.api.dto.PostReadDto;
+import com.alex.blog.event.LikesCountChangedEvent;
+import com.alex.blog.event.PostCreatedEvent;
+import com.alex.blog.event.PostUpdatedEvent;
+import com.alex.blog.search.PostPageDto;
+import com.alex.blog.search.SearchDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+class PostPageCacheTest {
+    private final static SearchDto tagSearch = new SearchDto("#test_tag1", 1, 10, null, null);
+    private final static SearchDto otherTagSearch = new SearchDto("#test_tag2", 1, 10, null, null);
+    private final static PostReadDto post = new PostReadDto(1L, "test title1", "test desc1", List.of("test_tag1"), 2L, 3L);
+
+    private SimpleMeterRegistry meterRegistry;
+    private PostPageCache postPageCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        postPageCache = new PostPageCache(100, Duration.ofMinutes(1), meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void getOrLoad_shouldLoadOnceAndRecordHits() {
+        postPageCache.getOrLoad(tagSearch, this::load);
+        postPageCache.getOrLoad(tagSearch, this::load);
+
+        Assertions.assertThat(loads).hasValue(1);
+        Assertions.assertThat(meterRegistry.get("cache.gets").tag("cache", "search.pages").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void getOrLoad_shouldReloadExpiredPage() {
+        postPageCache = new PostPageCache(100, Duration.ZERO, meterRegistry);
+
+        postPageCache.getOrLoad(tagSearch, this::load);
+        postPageCache.getOrLoad(tagSearch, this::load);
+
+        Assertions.assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void onLikesCountChanged_shouldPatchCachedPage() {
+        postPageCache.getOrLoad(tagSearch, this::load);
+
+        postPageCache.onLikesCountChanged(new LikesCountChangedEvent(1L, 10L));
+        PostPageDto actual = postPageCache.getOrLoad(tagSearch, this::load);
+
+        Assertions.assertThat(loads).hasValue(1);
+        Assertions.assertThat(actual.posts().getFirst().likesCount()).isEqualTo(10L);
+    }
+
+    @Test
+    void onPostCreated_shouldEvictOnlyMatchingPages() {
+        postPageCache.getOrLoad(tagSearch, this::load);
+        postPageCache.getOrLoad(otherTagSearch, this::load);
+
+        postPageCache.onPostCreated(new PostCreatedEvent(4L, List.of("test_tag1")));
+        postPageCache.getOrLoad(tagSearch, this::load);
+        postPageCache.getOrLoad(otherTagSearch, this::load);
+
+        Assertions.assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void onPostUpdated_shouldEvictPageShowingPost() {
+        postPageCache.getOrLoad(tagSearch, this::load);
+
+        postPageCache.onPostUpdated(new PostUpdatedEvent(1L, List.of("test_tag1"), List.of("test_tag1")));
+        postPageCache.getOrLoad(tagSearch, this::load);
+
+        Assertions.assertThat(loads).hasValue(2);
+    }
+
+    private PostPageDto load() {
+        loads.incrementAndGet();
+        return new PostPageDto(List.of(post), false, false, 0, null, null);
+    }
+}
@@ -0,0 +1,65 @@
+package com.alex.blog.cache;
+
+import com.alex.blog.event.PostCreatedEvent;
+import com.alex.blog.event.PostUpdatedEvent;
+import com.alex.blog.search.Criteria;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+class SearchCountCacheTest {
+    private SearchCountCache searchCountCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        searchCountCache = new SearchCountCache(100, Duration.ofMinutes(1));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void getOrLoad_shouldLoadNormalizedCriteriaOnce() {
+        searchCountCache.getOrLoad(new Criteria(" title ", List.of("b", "a")), this::load);
+        Long actual = searchCountCache.getOrLoad(new Criteria("title", List.of("a", "b", "a")), this::load);
+
+        Assertions.assertThat(actual).isEqualTo(1L);
+        Assertions.assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void onPostCreated_shouldEvictOnlyMatchingTags() {
+        Criteria matching = new Criteria("", List.of("a"));
+        Criteria other = new Criteria("", List.of("c"));
+        searchCountCache.getOrLoad(matching, this::load);
+        searchCountCache.getOrLoad(other, this::load);
+
+        searchCountCache.onPostCreated(new PostCreatedEvent(1L, List.of("a", "b")));
+        searchCountCache.getOrLoad(matching, this::load);
+        searchCountCache.getOrLoad(other, this::load);
+
+        Assertions.assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void onPostUpdated_shouldKeepTagOnlyCountsWhenTagsNotChanged() {
+        Criteria tagsOnly = new Criteria("", List.of("a"));
+        Criteria withTitle = new Criteria("title", List.of("a"));
+        searchCountCache.getOrLoad(tagsOnly, this::load);
+        searchCountCache.getOrLoad(withTitle, this::load);
+
+        searchCountCache.onPostUpdated(new PostUpdatedEvent(1L, List.of("a"), List.of("a")));
+        searchCountCache.getOrLoad(tagsOnly, this::load);
+        searchCountCache.getOrLoad(withTitle, this::load);
+
+        Assertions.assertThat(loads).hasValue(3);
+    }
+
+    private Long load() {
+        return (long) loads.incrementAndGet();
+    }
+}
@@ -0,0 +1,76 @@
+package com.alex.blog.counter;
+
+import com.alex.blog.repository.PostManagementRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+
+
+class LikesWriteBehindBufferTest {
+    private final static Long VALID_ID = 1L;
+    private final static Long INVALID_ID = 10000L;
+
+    private PostManagementRepository postManagementRepository;
+    private LikesWriteBehindBuffer likesWriteBehindBuffer;
+
+    @BeforeEach
+    void setUp() {
+        postManagementRepository = mock(PostManagementRepository.class);
+        likesWriteBehindBuffer = new LikesWriteBehindBuffer(postManagementRepository, mock(ApplicationEventPublisher.class),
+                true, Duration.ofHours(1));
+        when(postManagementRepository.findLikesCount(VALID_ID)).thenReturn(Optional.of(2L));
+        when(postManagementRepository.findLikesCount(INVALID_ID)).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void increment_shouldReturnPersistedPlusPendingLikes() {
+        likesWriteBehindBuffer.increment(VALID_ID);
+
+        Assertions.assertThat(likesWriteBehindBuffer.increment(VALID_ID)).hasValue(4L);
+        Assertions.assertThat(likesWriteBehindBuffer.increment(INVALID_ID)).isEmpty();
+        verify(postManagementRepository, never()).addLikesCounts(anyMap());
+    }
+
+    @Test
+    void flush_shouldWriteOnlyNotFlushedLikes() {
+        likesWriteBehindBuffer.increment(VALID_ID);
+        likesWriteBehindBuffer.increment(VALID_ID);
+
+        likesWriteBehindBuffer.flush();
+        likesWriteBehindBuffer.increment(VALID_ID);
+        likesWriteBehindBuffer.flush();
+        likesWriteBehindBuffer.flush();
+
+        verify(postManagementRepository).addLikesCounts(Map.of(VALID_ID, 2L));
+        verify(postManagementRepository).addLikesCounts(Map.of(VALID_ID, 1L));
+        verifyNoMoreInteractions(ignoreStubs(postManagementRepository));
+    }
+
+    @Test
+    void flush_shouldRetryLikesOfFailedFlush() {
+        likesWriteBehindBuffer.increment(VALID_ID);
+        doThrow(new IllegalStateException()).doNothing().when(postManagementRepository).addLikesCounts(anyMap());
+
+        Assertions.assertThatIllegalStateException().isThrownBy(() -> likesWriteBehindBuffer.flush());
+        likesWriteBehindBuffer.flush();
+
+        verify(postManagementRepository, times(2)).addLikesCounts(Map.of(VALID_ID, 1L));
+    }
+
+    @Test
+    void shutdown_shouldFlushPendingLikes() throws InterruptedException {
+        likesWriteBehindBuffer.onApplicationReady();
+        likesWriteBehindBuffer.increment(VALID_ID);
+
+        likesWriteBehindBuffer.shutdown();
+
+        verify(postManagementRepository).addLikesCounts(Map.of(VALID_ID, 1L));
+    }
+}
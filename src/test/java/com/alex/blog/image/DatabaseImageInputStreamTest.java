@@ -0,0 +1,69 @@
+package com.alex.blog.image;
+
+import com.alex.blog.repository.ImageRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+
+class DatabaseImageInputStreamTest {
+    private final static Long VALID_ID = 1L;
+    private final static String HASH = "abcd";
+    private final static byte[] image = new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+    private ImageRepository imageRepository;
+
+    @BeforeEach
+    void setUp() {
+        imageRepository = mock(ImageRepository.class);
+        when(imageRepository.findImageSlice(eq(VALID_ID), eq(HASH), anyLong(), anyInt())).thenAnswer(invocation -> {
+            int offset = Math.toIntExact(invocation.getArgument(2, Long.class));
+            int length = invocation.getArgument(3, Integer.class);
+            return Optional.of(Arrays.copyOfRange(image, offset, offset + length));
+        });
+    }
+
+    @Test
+    void read_shouldSelectImageInSlices() throws IOException {
+        InputStream imageStream = new DatabaseImageInputStream(imageRepository, VALID_ID, HASH, image.length, 4);
+
+        Assertions.assertThat(imageStream.readAllBytes()).isEqualTo(image);
+        verify(imageRepository).findImageSlice(VALID_ID, HASH, 0, 4);
+        verify(imageRepository).findImageSlice(VALID_ID, HASH, 4, 4);
+        verify(imageRepository).findImageSlice(VALID_ID, HASH, 8, 2);
+        verifyNoMoreInteractions(imageRepository);
+    }
+
+    @Test
+    void skip_shouldNotSelectSkippedSlices() throws IOException {
+        InputStream imageStream = new DatabaseImageInputStream(imageRepository, VALID_ID, HASH, image.length, 4);
+
+        Assertions.assertThat(imageStream.read()).isEqualTo(0);
+        Assertions.assertThat(imageStream.skip(6)).isEqualTo(6);
+        Assertions.assertThat(imageStream.readNBytes(2)).containsExactly(7, 8);
+        Assertions.assertThat(imageStream.skip(5)).isEqualTo(1);
+        Assertions.assertThat(imageStream.read()).isEqualTo(-1);
+
+        verify(imageRepository).findImageSlice(VALID_ID, HASH, 0, 4);
+        verify(imageRepository).findImageSlice(VALID_ID, HASH, 7, 3);
+        verifyNoMoreInteractions(imageRepository);
+    }
+
+    @Test
+    void read_shouldFailWhenImageWasReplaced() {
+        InputStream imageStream = new DatabaseImageInputStream(imageRepository, VALID_ID, "replaced", image.length, 4);
+        when(imageRepository.findImageSlice(eq(VALID_ID), eq("replaced"), anyLong(), anyInt())).thenReturn(Optional.empty());
+
+        Assertions.assertThatIOException().isThrownBy(imageStream::readAllBytes);
+    }
+}
@@ -0,0 +1,32 @@
+package com.alex.blog.image;
+
+import com.alex.blog.repository.ImageRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+
+
+class DatabaseImageResourceTest {
+    private final static Long VALID_ID = 1L;
+    private final static String HASH = "abcd";
+
+    @Test
+    void contentLength_shouldSelectSizeOnce() throws IOException {
+        ImageRepository imageRepository = mock(ImageRepository.class);
+        when(imageRepository.findImageSize(VALID_ID)).thenReturn(Optional.of(10L));
+        DatabaseImageResource resource = new DatabaseImageResource(imageRepository, VALID_ID, HASH, 4);
+
+        Assertions.assertThat(resource.exists()).isTrue();
+        Assertions.assertThat(resource.contentLength()).isEqualTo(10L);
+        try (InputStream ignored = resource.getInputStream()) {
+            Assertions.assertThat(resource.contentLength()).isEqualTo(10L);
+        }
+
+        verify(imageRepository, times(1)).findImageSize(VALID_ID);
+    }
+}
@@ -0,0 +1,176 @@
+package com.alex.blog.image;
+
+import com.alex.blog.model.ImageMetadata;
+import com.alex.blog.repository.ImageRepository;
+import com.alex.blog.repository.PostManagementRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+
+class FileSystemImageStorageTest {
+    private final static Long VALID_ID = 1L;
+    private final static byte[] image = new byte[]{(byte) 137, 80, 78, 71};
+    // SHA-256 of the image
+    private final static String HASH = "0f4636c78f65d3639ece5a064b5ae753e3408614a14fb18ab4d7540d2c248543";
+    private final static String IMAGE_PATH = "0f/46/" + HASH;
+
+    @TempDir
+    private Path root;
+    private ImageRepository imageRepository;
+    private PostManagementRepository postManagementRepository;
+    private FileSystemImageStorage fileSystemImageStorage;
+
+    @BeforeEach
+    void setUp() {
+        imageRepository = mock(ImageRepository.class);
+        postManagementRepository = mock(PostManagementRepository.class);
+        fileSystemImageStorage = new FileSystemImageStorage(imageRepository, postManagementRepository,
+                new StaticMessageSource(), TransactionOperations.withoutTransaction(), root, DataSize.ofKilobytes(256));
+        when(imageRepository.referenceImage(eq(VALID_ID), anyString(), anyString())).thenReturn(true);
+        when(imageRepository.moveDatabaseImageToPath(eq(VALID_ID), anyString(), anyString())).thenReturn(true);
+    }
+
+    @Test
+    void save_shouldWriteContentAddressedFileOnce() throws IOException {
+        fileSystemImageStorage.save(VALID_ID, new ByteArrayResource(image), image.length);
+        Optional<String> hash = fileSystemImageStorage.save(VALID_ID, new ByteArrayResource(image), image.length);
+
+        Assertions.assertThat(hash).hasValue(HASH);
+        verify(imageRepository, times(2)).referenceImage(VALID_ID, HASH, IMAGE_PATH);
+        verify(imageRepository).insertImage(HASH, null, 0);
+        Assertions.assertThat(root.resolve(IMAGE_PATH)).hasBinaryContent(image);
+        try (var files = Files.walk(root)) {
+            Assertions.assertThat(files.filter(Files::isRegularFile)).hasSize(1);
+        }
+    }
+
+    @Test
+    void save_shouldNotWriteFileOfMissingPost() throws IOException {
+        Optional<String> hash = fileSystemImageStorage.save(2L, new ByteArrayResource(image), image.length);
+
+        Assertions.assertThat(hash).isEmpty();
+        try (var files = Files.walk(root)) {
+            Assertions.assertThat(files.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    void save_shouldMoveFileInPlaceAfterCommit() throws IOException {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            fileSystemImageStorage.save(VALID_ID, new ByteArrayResource(image), image.length);
+
+            Assertions.assertThat(root.resolve(IMAGE_PATH)).doesNotExist();
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        Assertions.assertThat(root.resolve(IMAGE_PATH)).hasBinaryContent(image);
+        try (var files = Files.walk(root)) {
+            Assertions.assertThat(files.filter(Files::isRegularFile)).hasSize(1);
+        }
+    }
+
+    @Test
+    void save_shouldLeaveNoFileAfterRollback() throws IOException {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            fileSystemImageStorage.save(VALID_ID, new ByteArrayResource(image), image.length);
+
+            completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        try (var files = Files.walk(root)) {
+            Assertions.assertThat(files.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    void delete_shouldDeleteImageFileWithVariants() {
+        ImageMetadata metadata = new ImageMetadata(IMAGE_PATH, HASH, "image/png", Instant.now());
+        fileSystemImageStorage.save(VALID_ID, new ByteArrayResource(image), image.length);
+        fileSystemImageStorage.saveVariant(VALID_ID, metadata, ImageVariant.THUMB, new byte[]{1, 2});
+
+        fileSystemImageStorage.delete(HASH);
+
+        Assertions.assertThat(root.resolve(IMAGE_PATH)).doesNotExist();
+        Assertions.assertThat(root.resolve(IMAGE_PATH + "-thumb")).doesNotExist();
+    }
+
+    @Test
+    void open_shouldReturnFileOrNotMovedDatabaseImage() throws IOException {
+        fileSystemImageStorage.save(VALID_ID, new ByteArrayResource(image), image.length);
+        when(imageRepository.findImageSize(2L)).thenReturn(Optional.of((long) image.length));
+        when(imageRepository.findImageSlice(2L, null, 0, image.length)).thenReturn(Optional.of(image));
+
+        Resource fileImage = fileSystemImageStorage.open(VALID_ID, new ImageMetadata(IMAGE_PATH, HASH, "image/png", Instant.now()));
+        Resource databaseImage = fileSystemImageStorage.open(2L, new ImageMetadata(null, null, null, null));
+
+        Assertions.assertThat(fileImage).isInstanceOf(FileSystemResource.class);
+        Assertions.assertThat(fileImage.getContentAsByteArray()).isEqualTo(image);
+        verify(imageRepository, never()).findImageSlice(anyLong(), any(), anyLong(), anyInt());
+        Assertions.assertThat(databaseImage.getContentAsByteArray()).isEqualTo(image);
+    }
+
+    @Test
+    void saveVariant_shouldWriteVariantNextToImageFile() throws IOException {
+        ImageMetadata metadata = new ImageMetadata(IMAGE_PATH, HASH, "image/png", Instant.now());
+        fileSystemImageStorage.save(VALID_ID, new ByteArrayResource(image), image.length);
+        Assertions.assertThat(fileSystemImageStorage.openVariant(VALID_ID, metadata, ImageVariant.THUMB)).isEmpty();
+
+        fileSystemImageStorage.saveVariant(VALID_ID, metadata, ImageVariant.THUMB, new byte[]{1, 2});
+
+        Assertions.assertThat(root.resolve(IMAGE_PATH + "-thumb")).hasBinaryContent(new byte[]{1, 2});
+        Assertions.assertThat(fileSystemImageStorage.openVariant(VALID_ID, metadata, ImageVariant.THUMB)
+                .get().getContentAsByteArray()).isEqualTo(new byte[]{1, 2});
+    }
+
+    @Test
+    void migrateDatabaseImages_shouldMoveImagesInBatches() {
+        when(imageRepository.findPostIdsWithDatabaseImages(0L, 1)).thenReturn(List.of(VALID_ID));
+        when(imageRepository.findPostIdsWithDatabaseImages(VALID_ID, 1)).thenReturn(List.of());
+        when(postManagementRepository.getImage(VALID_ID)).thenReturn(Optional.of(image));
+
+        int moved = fileSystemImageStorage.migrateDatabaseImages(1);
+
+        Assertions.assertThat(moved).isEqualTo(1);
+        verify(imageRepository).moveDatabaseImageToPath(VALID_ID, IMAGE_PATH, HASH);
+        Assertions.assertThat(root.resolve(IMAGE_PATH)).exists();
+    }
+
+    private void completeTransaction(int status) {
+        TransactionSynchronizationManager.getSynchronizations().forEach(synchronization -> {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.alex.blog.image;
+
+import com.alex.blog.model.ImageMetadata;
+import com.alex.blog.repository.ImageRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.ByteArrayResource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+
+class ImageVariantGeneratorTest {
+    private final static Long VALID_ID = 1L;
+    private final static ImageMetadata metadata = new ImageMetadata(null, "abcd", "image/png", Instant.now());
+
+    private ImageRepository imageRepository;
+    private ImageStorage imageStorage;
+    private ImageVariantGenerator imageVariantGenerator;
+
+    @BeforeEach
+    void setUp() {
+        imageRepository = mock(ImageRepository.class);
+        imageStorage = mock(ImageStorage.class);
+        imageVariantGenerator = new ImageVariantGenerator(imageRepository, imageStorage, false, 1, 1, 320, 1024);
+    }
+
+    @Test
+    void generate_shouldSaveResizedJpegVariants() throws IOException {
+        when(imageRepository.findImageMetadata(VALID_ID)).thenReturn(Optional.of(metadata));
+        when(imageStorage.open(VALID_ID, metadata)).thenReturn(new ByteArrayResource(png(800, 400)));
+
+        imageVariantGenerator.generate(VALID_ID);
+
+        ArgumentCaptor<byte[]> thumb = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<byte[]> medium = ArgumentCaptor.forClass(byte[].class);
+        verify(imageStorage).saveVariant(eq(VALID_ID), eq(metadata), eq(ImageVariant.THUMB), thumb.capture());
+        verify(imageStorage).saveVariant(eq(VALID_ID), eq(metadata), eq(ImageVariant.MEDIUM), medium.capture());
+        BufferedImage thumbImage = ImageIO.read(new ByteArrayInputStream(thumb.getValue()));
+        BufferedImage mediumImage = ImageIO.read(new ByteArrayInputStream(medium.getValue()));
+        Assertions.assertThat(thumbImage.getWidth()).isEqualTo(320);
+        Assertions.assertThat(thumbImage.getHeight()).isEqualTo(160);
+        // an image is not enlarged
+        Assertions.assertThat(mediumImage.getWidth()).isEqualTo(800);
+    }
+
+    @Test
+    void generate_shouldSkipImageNotReadableByImageIO() {
+        when(imageRepository.findImageMetadata(VALID_ID)).thenReturn(Optional.of(metadata));
+        when(imageStorage.open(VALID_ID, metadata)).thenReturn(new ByteArrayResource(new byte[]{1, 2, 3, 4}));
+
+        imageVariantGenerator.generate(VALID_ID);
+
+        verify(imageStorage, never()).saveVariant(any(), any(), any(), any());
+    }
+
+    @Test
+    void enqueue_shouldDoNothingWhenDisabled() {
+        imageVariantGenerator.onApplicationReady();
+
+        imageVariantGenerator.enqueue(VALID_ID);
+
+        verifyNoInteractions(imageRepository, imageStorage);
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", image);
+        return image.toByteArray();
+    }
+}
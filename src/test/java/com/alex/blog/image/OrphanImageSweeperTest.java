@@ -0,0 +1,52 @@
+package com.alex.blog.image;
+
+import com.alex.blog.repository.ImageRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+
+class OrphanImageSweeperTest {
+
+    private ImageRepository imageRepository;
+    private ImageStorage imageStorage;
+    private OrphanImageSweeper orphanImageSweeper;
+
+    @BeforeEach
+    void setUp() {
+        imageRepository = mock(ImageRepository.class);
+        imageStorage = mock(ImageStorage.class);
+        orphanImageSweeper = new OrphanImageSweeper(imageRepository, imageStorage, TransactionOperations.withoutTransaction(),
+                Duration.ofMinutes(10), 2);
+    }
+
+    @Test
+    void sweep_shouldDeleteOrphansInBatches() {
+        when(imageRepository.findOrphanImageHashes(2)).thenReturn(List.of("ab", "cd"), List.of("ef"));
+        when(imageRepository.deleteOrphanImage(anyString())).thenReturn(true);
+
+        int swept = orphanImageSweeper.sweep();
+
+        Assertions.assertThat(swept).isEqualTo(3);
+        verify(imageStorage).delete("ab");
+        verify(imageStorage).delete("cd");
+        verify(imageStorage).delete("ef");
+    }
+
+    @Test
+    void sweep_shouldKeepImageReferencedAgain() {
+        when(imageRepository.findOrphanImageHashes(2)).thenReturn(List.of("ab"));
+        when(imageRepository.deleteOrphanImage("ab")).thenReturn(false);
+
+        int swept = orphanImageSweeper.sweep();
+
+        Assertions.assertThat(swept).isZero();
+        verify(imageStorage, never()).delete(anyString());
+    }
+}
@@ -2,6 +2,7 @@ package com.alex.blog.integration.controller;
 
 import com.alex.blog.api.dto.CommentCreateDto;
 import com.alex.blog.api.dto.CommentUpdateDto;
+import com.alex.blog.search.Cursor;
 import com.alex.blog.service.MessageKey;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.assertj.core.api.Assertions;
@@ -17,6 +18,7 @@ import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Locale;
 
 import static org.hamcrest.Matchers.hasSize;
@@ -85,6 +87,38 @@ class CommentRestControllerIT extends BaseIntegrationTest{
                 .andExpect(content().string(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{INVALID_ID}, Locale.ENGLISH)));
     }
 
+    @Test
+    void getCommentsPage_shouldReturnCommentsPageByCursorSuccess() throws Exception {
+        String next = Cursor.after(VALID_ID).encode();
+
+        mockMvc.perform(get("/api/posts/{postId}/comments", VALID_ID).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.comments", hasSize(1)))
+                .andExpect(jsonPath("$.comments[0].id").value(VALID_ID))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.next").value(next));
+
+        mockMvc.perform(get("/api/posts/{postId}/comments", VALID_ID).param("limit", "1").param("cursor", next))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.comments", hasSize(1)))
+                .andExpect(jsonPath("$.comments[0].id").value(4L))
+                .andExpect(jsonPath("$.hasNext").value(false))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    void getCommentsPage_shouldInvalidLimit400Fail() throws Exception {
+        mockMvc.perform(get("/api/posts/{postId}/comments", VALID_ID).param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getCommentsPage_shouldInvalidCursor400Fail() throws Exception {
+        mockMvc.perform(get("/api/posts/{postId}/comments", VALID_ID).param("limit", "1").param("cursor", "bad cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(messageSource.getMessage(MessageKey.INVALID_CURSOR_EX, new Object[]{"bad cursor"}, Locale.ENGLISH)));
+    }
+
     @Test
     void updateComment_shouldReturnUpdatedCommentJsonSuccess() throws Exception {
         CommentUpdateDto givenDto = new CommentUpdateDto(VALID_ID, "Updated test comment1", VALID_ID);
@@ -169,6 +203,50 @@ class CommentRestControllerIT extends BaseIntegrationTest{
     }
 
 
+    @Test
+    @Transactional
+    void saveComments_shouldReturnPersistCommentsJsonArraySuccess() throws Exception {
+        List<CommentCreateDto> givenDtos = List.of(new CommentCreateDto("NEW test comment1", VALID_ID),
+                new CommentCreateDto("NEW test comment2", VALID_ID));
+
+        mockMvc.perform(post("/api/posts/{postId}/comments/batch", VALID_ID)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(givenDtos))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(7L))
+                .andExpect(jsonPath("$[1].id").value(8L))
+                .andExpect(jsonPath("$[1].text").value("NEW test comment2"));
+
+        Assertions.assertThat(jdbcTemplate.queryForObject("SELECT comments_count FROM posts WHERE id = ?", Long.class, VALID_ID))
+                .isEqualTo(5L);
+    }
+
+    @Test
+    void saveComments_shouldMismatchPostId400Fail() throws Exception {
+        List<CommentCreateDto> givenDtos = List.of(new CommentCreateDto("NEW test comment1", VALID_ID),
+                new CommentCreateDto("NEW test comment2", 2L));
+
+        mockMvc.perform(post("/api/posts/{postId}/comments/batch", VALID_ID)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(givenDtos)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void saveComments_shouldPostNotFoundFail() throws Exception {
+        List<CommentCreateDto> givenDtos = List.of(new CommentCreateDto("NEW test comment1", INVALID_ID));
+
+        mockMvc.perform(post("/api/posts/{postId}/comments/batch", INVALID_ID)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(givenDtos)))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{INVALID_ID}, Locale.ENGLISH)));
+    }
+
+
     @Test
     void delete_shouldDeleteCommentSuccess() throws Exception {
         mockMvc.perform(delete("/api/posts/{postId}/comments/{commId}", VALID_ID, VALID_ID))
@@ -3,6 +3,7 @@ package com.alex.blog.integration.controller;
 import com.alex.blog.api.dto.PostCreateDto;
 import com.alex.blog.api.dto.PostReadDto;
 import com.alex.blog.api.dto.PostUpdateDto;
+import com.alex.blog.search.Cursor;
 import com.alex.blog.service.MessageKey;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.assertj.core.api.Assertions;
@@ -160,6 +161,63 @@ class PostRestControllerIT extends BaseIntegrationTest{
     }
 
 
+    @Test
+    void givenCursor_search_shouldReturnKeysetPages() throws Exception {
+        String next = Cursor.after(2L).encode();
+
+        mockMvc.perform(get("/api/posts")
+                        .param("search", "test t")
+                        .param("pageNumber", "1")
+                        .param("pageSize", "2")
+                        .param("cursor", "")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(2)))
+                .andExpect(jsonPath("$.posts[1].id").value("2"))
+                .andExpect(jsonPath("$.hasPrev").value(false))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.next").value(next));
+
+        mockMvc.perform(get("/api/posts")
+                        .param("search", "test t")
+                        .param("pageNumber", "1")
+                        .param("pageSize", "2")
+                        .param("cursor", next)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(1)))
+                .andExpect(jsonPath("$.posts[0].id").value("3"))
+                .andExpect(jsonPath("$.hasPrev").value(true))
+                .andExpect(jsonPath("$.hasNext").value(false))
+                .andExpect(jsonPath("$.prev").value(Cursor.before(3L).encode()));
+    }
+
+    @Test
+    void givenWithTotalFalse_search_shouldReturnPageWithoutLastPage() throws Exception {
+        mockMvc.perform(get("/api/posts")
+                        .param("search", "test t")
+                        .param("pageNumber", "1")
+                        .param("pageSize", "2")
+                        .param("withTotal", "false")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(2)))
+                .andExpect(jsonPath("$.hasPrev").value(false))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.lastPage").doesNotExist());
+    }
+
+    @Test
+    void givenInvalidCursor_search_shouldBadRequest400() throws Exception {
+        mockMvc.perform(get("/api/posts")
+                        .param("search", "test t")
+                        .param("pageNumber", "1")
+                        .param("pageSize", "2")
+                        .param("cursor", "not-a-cursor")
+                )
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void updateImage_ShouldPostNotFound404() throws Exception {
 
@@ -172,18 +230,29 @@ class PostRestControllerIT extends BaseIntegrationTest{
     @Test
     void uploadAndDownloadSuccess_shouldSaveAndReturnArrayBytes() throws Exception {
         byte[] givenImage = new byte[]{(byte) 137, 80, 78, 71};
-        MockMultipartFile file = new MockMultipartFile("image", "image.jpg", "image/jpg", givenImage);
+        MockMultipartFile file = new MockMultipartFile("image", "image.png", "image/png", givenImage);
 
         mockMvc.perform(multipart(HttpMethod.PUT, "/api/posts/{id}/image", 1)
                         .file(file)
                         .contentType(MediaType.MULTIPART_FORM_DATA))
                 .andExpect(status().isOk());
 
-        mockMvc.perform(get("/api/posts/{id}/image", 1L))
+        String eTag = mockMvc.perform(get("/api/posts/{id}/image", 1L))
                 .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.IMAGE_JPEG))
-                .andExpect(header().string("Cache-Control", "no-store"))
-                .andExpect(content().bytes(givenImage));
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().string("Cache-Control", "max-age=3600"))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(content().bytes(givenImage))
+                .andReturn().getResponse().getHeader("ETag");
+
+        Assertions.assertThat(eTag).isEqualTo("\"0f4636c78f65d3639ece5a064b5ae753e3408614a14fb18ab4d7540d2c248543\"");
+        mockMvc.perform(get("/api/posts/{id}/image", 1L).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+        mockMvc.perform(get("/api/posts/{id}/image", 1L).header("Range", "bytes=2-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 2-3/4"))
+                .andExpect(content().bytes(new byte[]{78, 71}));
     }
 
     @Test
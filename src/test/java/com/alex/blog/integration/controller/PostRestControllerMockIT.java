@@ -6,6 +6,9 @@ import com.alex.blog.api.dto.PostUpdateDto;
 import com.alex.blog.api.rest.controller.PostRestController;
 import com.alex.blog.exception.EntityNotFoundException;
 import com.alex.blog.exception.TitleAlreadyExistsException;
+import com.alex.blog.image.ImageVariant;
+import com.alex.blog.image.PostImage;
+import com.alex.blog.model.ImageMetadata;
 import com.alex.blog.search.PostPageDto;
 import com.alex.blog.search.SearchDto;
 import com.alex.blog.service.PostService;
@@ -13,6 +16,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
@@ -20,8 +25,12 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockReset;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
@@ -36,6 +45,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 public class PostRestControllerMockIT {
     private static final Long VALID_ID = 1L;
     private static final Long INVALID_ID = 10000L;
+    private static final String IMAGE_HASH = "0f4636c78f65d3639ece5a064b5ae753e3408614a14fb18ab4d7540d2c248543";
+    private static final Instant IMAGE_UPDATED_AT = Instant.parse("2025-01-01T10:00:00Z");
 
     @Autowired
     private ObjectMapper objectMapper;
@@ -133,10 +144,10 @@ public class PostRestControllerMockIT {
 
     @Test
     void givenTagsOrAndTitle_search_shouldReturnJSONArray() throws Exception {
-        SearchDto givenDto=new SearchDto("title",1,3);
+        SearchDto givenDto=new SearchDto("title",1,3,null,null);
         PostReadDto expectedPostOne = new PostReadDto(VALID_ID, null, null, null,null,null);
         PostReadDto expectedPostTwo = new PostReadDto(INVALID_ID, null, null, null,null,null);
-        PostPageDto expectedDto=new PostPageDto(List.of(expectedPostOne,expectedPostTwo),false,false,1);
+        PostPageDto expectedDto=new PostPageDto(List.of(expectedPostOne,expectedPostTwo),false,false,1,null,null);
         when(postService.findPageByCriteria(givenDto))
                         .thenReturn(expectedDto);
 
@@ -155,6 +166,24 @@ public class PostRestControllerMockIT {
                 .andExpect(jsonPath("$.lastPage").value(expectedDto.lastPage()));
     }
 
+    @Test
+    void export_shouldStreamNdjson() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(1);
+            outputStream.write("{\"id\":1}\n{\"id\":2}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(postService).exportByCriteria(eq("#test_tag1"), any(OutputStream.class));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/posts/export").param("search", "#test_tag1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"id\":1}\n{\"id\":2}\n"));
+    }
+
 
 
     @Test
@@ -172,9 +201,10 @@ public class PostRestControllerMockIT {
     @Test
     void uploadAndDownloadSuccess_shouldSaveAndReturnArrayBytes() throws Exception {
         byte[] givenImage = new byte[]{(byte) 137, 80, 78, 71};
-        MockMultipartFile file = new MockMultipartFile("image", "image.jpg", "image/jpg", givenImage);
+        MockMultipartFile file = new MockMultipartFile("image", "image.png", "image/png", givenImage);
         when(postService.updateImage(VALID_ID,file)).thenReturn(true);
-        when(postService.getImage(VALID_ID)).thenReturn(givenImage);
+        when(postService.getImage(VALID_ID, ImageVariant.ORIGINAL)).thenReturn(new PostImage(new ByteArrayResource(givenImage),
+                new ImageMetadata(null, IMAGE_HASH, MediaType.IMAGE_PNG_VALUE, IMAGE_UPDATED_AT), false));
 
         mockMvc.perform(multipart(HttpMethod.PUT, "/api/posts/{id}/image", 1)
                         .file(file)
@@ -182,9 +212,86 @@ public class PostRestControllerMockIT {
                 .andExpect(status().isOk());
 
         mockMvc.perform(get("/api/posts/{id}/image", 1L))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().string("Cache-Control", "max-age=3600"))
+                .andExpect(header().string("ETag", "\"" + IMAGE_HASH + "\""))
+                .andExpect(header().dateValue("Last-Modified", IMAGE_UPDATED_AT.toEpochMilli()))
+                .andExpect(content().bytes(givenImage));
+    }
+
+    @Test
+    void getImage_shouldReturnNotModifiedWithoutReadingImage() throws Exception {
+        Resource image = mock(Resource.class);
+        when(postService.getImage(VALID_ID, ImageVariant.ORIGINAL)).thenReturn(new PostImage(image,
+                new ImageMetadata(null, IMAGE_HASH, MediaType.IMAGE_PNG_VALUE, IMAGE_UPDATED_AT), false));
+
+        mockMvc.perform(get("/api/posts/{id}/image", VALID_ID)
+                        .header("If-None-Match", "\"" + IMAGE_HASH + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"" + IMAGE_HASH + "\""))
+                .andExpect(content().bytes(new byte[0]));
+
+        verify(image, never()).contentLength();
+        verify(image, never()).getInputStream();
+    }
+
+    @Test
+    void getImage_shouldBadRequestForEmptyImage() throws Exception {
+        Resource image = mock(Resource.class);
+        when(postService.getImage(VALID_ID, ImageVariant.ORIGINAL)).thenReturn(new PostImage(image,
+                new ImageMetadata(null, "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                        MediaType.IMAGE_PNG_VALUE, IMAGE_UPDATED_AT), false));
+
+        mockMvc.perform(get("/api/posts/{id}/image", VALID_ID))
+                .andExpect(status().isBadRequest());
+
+        verify(image, never()).contentLength();
+    }
+
+    @Test
+    void getImage_shouldReturnRequestedRange() throws Exception {
+        byte[] givenImage = new byte[]{(byte) 137, 80, 78, 71};
+        when(postService.getImage(VALID_ID, ImageVariant.ORIGINAL)).thenReturn(new PostImage(new ByteArrayResource(givenImage),
+                new ImageMetadata(null, IMAGE_HASH, MediaType.IMAGE_PNG_VALUE, IMAGE_UPDATED_AT), false));
+
+        mockMvc.perform(get("/api/posts/{id}/image", VALID_ID).header("Range", "bytes=1-2"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().string("Content-Range", "bytes 1-2/4"))
+                .andExpect(content().bytes(new byte[]{80, 78}));
+    }
+
+    @Test
+    void getImage_shouldNotCacheOriginalServedForMissingVariant() throws Exception {
+        byte[] givenImage = new byte[]{(byte) 137, 80, 78, 71};
+        when(postService.getImage(VALID_ID, ImageVariant.THUMB)).thenReturn(new PostImage(new ByteArrayResource(givenImage),
+                new ImageMetadata(null, IMAGE_HASH, MediaType.IMAGE_PNG_VALUE, IMAGE_UPDATED_AT), true));
+
+        mockMvc.perform(get("/api/posts/{id}/image", VALID_ID).param("size", "thumb"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andExpect(content().bytes(givenImage));
+    }
+
+    @Test
+    void getImage_shouldBadRequestForUnknownSize() throws Exception {
+        mockMvc.perform(get("/api/posts/{id}/image", VALID_ID).param("size", "huge"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(postService);
+    }
+
+    @Test
+    void getImage_shouldReturnJpegWhenTypeWasNotRecorded() throws Exception {
+        byte[] givenImage = new byte[]{1, 2, 3, 4};
+        when(postService.getImage(VALID_ID, ImageVariant.ORIGINAL)).thenReturn(new PostImage(new ByteArrayResource(givenImage),
+                new ImageMetadata(null, null, null, null), false));
+
+        mockMvc.perform(get("/api/posts/{id}/image", VALID_ID))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.IMAGE_JPEG))
-                .andExpect(header().string("Cache-Control", "no-store"))
+                .andExpect(header().doesNotExist("ETag"))
                 .andExpect(content().bytes(givenImage));
     }
 
@@ -0,0 +1,38 @@
+package com.alex.blog.integration.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+
+class TagRestControllerIT extends BaseIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void suggest_shouldReturnMostUsedTagsForPrefix() throws Exception {
+        mockMvc.perform(get("/api/tags/suggest")
+                        .param("prefix", "#test_")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].tag").value("test_tag1"))
+                .andExpect(jsonPath("$[0].postsCount").value(2))
+                .andExpect(jsonPath("$[1].tag").value("test_tag2"));
+    }
+
+    @Test
+    void suggest_shouldTreatLikeWildcardsLiterally() throws Exception {
+        mockMvc.perform(get("/api/tags/suggest")
+                        .param("prefix", "%"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+}
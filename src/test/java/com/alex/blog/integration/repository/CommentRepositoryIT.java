@@ -42,28 +42,68 @@ class CommentRepositoryIT {
     void save_shouldSaveCommentAndReturnPersistComment() {
         Comment givenComment = new Comment(null, "test comment100", 1L);
 
-        Comment savedComment = commentRepository.save(givenComment);
+        Optional<Comment> savedComment = commentRepository.save(givenComment);
 
-        Assertions.assertThat(savedComment).hasFieldOrPropertyWithValue("id", 7L);
+        Assertions.assertThat(savedComment).hasValueSatisfying(saved ->
+                Assertions.assertThat(saved).hasFieldOrPropertyWithValue("id", 7L));
+    }
+
+    @Test
+    void saveAll_shouldSaveCommentsInOneBatchAndReturnPersistComments() {
+        List<Comment> givenComments = List.of(new Comment(null, "test comment100", 1L),
+                new Comment(null, "test comment101", 2L));
+
+        List<Comment> savedComments = commentRepository.saveAll(givenComments);
+
+        Assertions.assertThat(savedComments).containsExactly(new Comment(7L, "test comment100", 1L),
+                new Comment(8L, "test comment101", 2L));
+    }
+
+    @Test
+    void save_shouldReturnEmptyForMissingPost() {
+        Comment givenComment = new Comment(null, "test comment100", INVALID_ID);
+
+        Assertions.assertThat(commentRepository.save(givenComment)).isEmpty();
     }
 
     @Test
     void delete_shouldDeleteComment() {
-        commentRepository.delete(VALID_ID);
+        boolean deleted = commentRepository.delete(VALID_ID, VALID_ID);
 
         Boolean expectedExists = jdbcTemplate.queryForObject("SELECT EXISTS(SELECT 1 FROM comments WHERE id = ?)", Boolean.class, VALID_ID);
 
+        Assertions.assertThat(deleted).isTrue();
         Assertions.assertThat(expectedExists).isFalse();
     }
 
+    @Test
+    void delete_shouldNotDeleteCommentOfAnotherPost() {
+        Assertions.assertThat(commentRepository.delete(2L, VALID_ID)).isFalse();
+        Assertions.assertThat(commentRepository.findById(VALID_ID)).isPresent();
+    }
+
 
     @Test
     void update_shouldReturnUpdatedComment() {
         Comment givenComment = new Comment(VALID_ID, "Updated comment1", VALID_ID);
 
-        Comment updatedComment = commentRepository.update(givenComment);
+        Optional<Comment> updatedComment = commentRepository.update(givenComment);
 
-        Assertions.assertThat(updatedComment).isEqualTo(givenComment);
+        Assertions.assertThat(updatedComment).hasValue(givenComment);
+    }
+
+    @Test
+    void update_shouldKeepTextWhenItIsMissing() {
+        Optional<Comment> updatedComment = commentRepository.update(new Comment(VALID_ID, null, VALID_ID));
+
+        Assertions.assertThat(updatedComment).map(Comment::getText).hasValue("test comment1");
+    }
+
+    @Test
+    void update_shouldReturnEmptyForCommentOfAnotherPost() {
+        Comment givenComment = new Comment(VALID_ID, "Updated comment1", 2L);
+
+        Assertions.assertThat(commentRepository.update(givenComment)).isEmpty();
     }
 
     @Test
@@ -82,6 +122,15 @@ class CommentRepositoryIT {
         Assertions.assertThat(comments).isNotNull().hasSize(2).contains(comment);
     }
 
+    @Test
+    void findCommentsByPostIdAfter_shouldReturnCommentsAfterIdOrderedById() {
+        List<Comment> firstComments = commentRepository.findCommentsByPostIdAfter(VALID_ID, 0L, 1);
+        List<Comment> nextComments = commentRepository.findCommentsByPostIdAfter(VALID_ID, 1L, 10);
+
+        Assertions.assertThat(firstComments).containsExactly(comment);
+        Assertions.assertThat(nextComments).extracting(Comment::getId).containsExactly(4L);
+    }
+
     @TestConfiguration
     static class TestCommentRepositoryConfig {
         @Bean
@@ -0,0 +1,82 @@
+package com.alex.blog.integration.repository;
+
+import com.alex.blog.cache.SearchCountCache;
+import com.alex.blog.model.Post;
+import com.alex.blog.repository.PostSearchRepository;
+import com.alex.blog.repository.dialect.H2SqlDialect;
+import com.alex.blog.repository.impl.FullTextPostSearchImpl;
+import com.alex.blog.search.Criteria;
+import com.alex.blog.search.index.TagBitmapIndex;
+import com.alex.blog.tag.TagDictionary;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.time.Duration;
+import java.util.List;
+
+@JdbcTest
+@Sql("classpath:data-test.sql")
+@ActiveProfiles("test")
+class FullTextPostSearchRepositoryIT {
+
+    @Autowired
+    private PostSearchRepository postSearchRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void findPostsByCriteriaAndPageable_shouldMatchPostText() {
+        Page<Post> actualPage = postSearchRepository.findPostsByCriteriaAndPageable(
+                new Criteria("DESC2", List.of()), PageRequest.of(0, 10));
+
+        Assertions.assertThat(actualPage.getContent()).extracting(Post::getId).containsExactly(2L);
+        Assertions.assertThat(actualPage.getTotalElements()).isEqualTo(1L);
+    }
+
+    @Test
+    void findPostsByCriteriaAndPageable_shouldCombineWithTags() {
+        Page<Post> actualPage = postSearchRepository.findPostsByCriteriaAndPageable(
+                new Criteria("test desc", List.of("test_tag1")), PageRequest.of(0, 10));
+
+        Assertions.assertThat(actualPage.getContent()).extracting(Post::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void findPostsByCriteriaAndPageable_shouldRankTitleMatchesFirst() {
+        jdbcTemplate.update("INSERT INTO posts(title, text) VALUES ('desc in the title', 'nothing')");
+
+        Page<Post> actualPage = postSearchRepository.findPostsByCriteriaAndPageable(
+                new Criteria("desc", List.of()), PageRequest.of(0, 2));
+
+        Assertions.assertThat(actualPage.getContent()).extracting(Post::getId).containsExactly(4L, 1L);
+        Assertions.assertThat(actualPage.getTotalElements()).isEqualTo(4L);
+    }
+
+    @TestConfiguration
+    static class TestFullTextPostSearchRepositoryConfig {
+        @Bean
+        public TagDictionary tagDictionary(JdbcTemplate jdbcTemplate) {
+            return new TagDictionary(jdbcTemplate);
+        }
+
+        @Bean
+        public PostSearchRepository postSearchRepository(
+                NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                JdbcTemplate jdbcTemplate,
+                TagDictionary tagDictionary) {
+
+            return new FullTextPostSearchImpl(namedParameterJdbcTemplate, jdbcTemplate,
+                    new TagBitmapIndex(jdbcTemplate, false), tagDictionary, new SearchCountCache(0, Duration.ZERO), new H2SqlDialect(), false, 128, 100);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.alex.blog.integration.repository;
+
+import com.alex.blog.model.ImageMetadata;
+import com.alex.blog.repository.ImageRepository;
+import com.alex.blog.repository.impl.JdbcNativeImageRepositoryImpl;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.io.ByteArrayInputStream;
+import java.util.Optional;
+
+@JdbcTest
+@Sql("classpath:data-test.sql")
+@ActiveProfiles("test")
+class ImageRepositoryIT {
+
+    private final static Long VALID_ID = 1L;
+    private final static Long INVALID_ID = 1000000L;
+    private final static String HASH = "abcd";
+    private final static String IMAGE_PATH = "ab/cd/" + HASH;
+
+    @Autowired
+    private ImageRepository imageRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void referenceImage_shouldReplaceDatabaseImage() {
+        jdbcTemplate.update("UPDATE posts SET image = ? WHERE id = ?", new byte[]{1, 2, 3, 4}, VALID_ID);
+
+        boolean updated = imageRepository.referenceImage(VALID_ID, HASH, IMAGE_PATH);
+
+        Assertions.assertThat(updated).isTrue();
+        Assertions.assertThat(imageRepository.findImageMetadata(VALID_ID)).map(ImageMetadata::path).hasValue(IMAGE_PATH);
+        Assertions.assertThat(jdbcTemplate.queryForObject("SELECT image FROM posts WHERE id = ?", byte[].class, VALID_ID)).isNull();
+        Assertions.assertThat(imageRepository.referenceImage(INVALID_ID, HASH, IMAGE_PATH)).isFalse();
+    }
+
+    @Test
+    void referenceImage_shouldReleasePreviousImageOfPost() {
+        imageRepository.insertImage(HASH, new ByteArrayInputStream(new byte[]{1, 2, 3, 4}), 4);
+        imageRepository.insertImage("ef01", null, 0);
+        imageRepository.referenceImage(VALID_ID, HASH, null);
+
+        imageRepository.referenceImage(VALID_ID, "ef01", null);
+
+        Assertions.assertThat(refCount(HASH)).isZero();
+        Assertions.assertThat(refCount("ef01")).isEqualTo(1);
+        Assertions.assertThat(imageRepository.findOrphanImageHashes(10)).containsExactly(HASH);
+    }
+
+    @Test
+    void acquireImage_shouldCountReferenceOfStoredImageOnly() {
+        Assertions.assertThat(imageRepository.acquireImage(HASH)).isFalse();
+        Assertions.assertThat(imageRepository.insertImage(HASH, new ByteArrayInputStream(new byte[]{1, 2, 3, 4}), 4)).isTrue();
+        Assertions.assertThat(imageRepository.insertImage(HASH, new ByteArrayInputStream(new byte[]{1, 2, 3, 4}), 4)).isFalse();
+
+        Assertions.assertThat(imageRepository.acquireImage(HASH)).isTrue();
+        Assertions.assertThat(refCount(HASH)).isEqualTo(2);
+    }
+
+    @Test
+    void storeMissingImage_shouldFillRowWithoutContent() {
+        imageRepository.insertImage(HASH, null, 0);
+
+        Assertions.assertThat(imageRepository.existsImage(HASH)).isTrue();
+        Assertions.assertThat(imageRepository.acquireStoredImage(HASH)).isFalse();
+        Assertions.assertThat(imageRepository.storeMissingImage(HASH, new ByteArrayInputStream(new byte[]{1, 2, 3, 4}), 4)).isTrue();
+        Assertions.assertThat(imageRepository.storeMissingImage(HASH, new ByteArrayInputStream(new byte[]{1, 2, 3, 4}), 4)).isFalse();
+
+        Assertions.assertThat(imageRepository.acquireStoredImage(HASH)).isTrue();
+        Assertions.assertThat(refCount(HASH)).isEqualTo(3);
+        Assertions.assertThat(jdbcTemplate.queryForObject("SELECT image FROM images WHERE hash = ?", byte[].class, HASH))
+                .containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void releaseImage_shouldLeaveOrphanForSweeper() {
+        imageRepository.insertImage(HASH, new ByteArrayInputStream(new byte[]{1, 2, 3, 4}), 4);
+        imageRepository.acquireImage(HASH);
+        imageRepository.referenceImage(1L, HASH, null);
+        imageRepository.referenceImage(2L, HASH, null);
+
+        imageRepository.releaseImage(1L);
+        Assertions.assertThat(imageRepository.deleteOrphanImage(HASH)).isFalse();
+        imageRepository.releaseImage(2L);
+        imageRepository.releaseImage(INVALID_ID);
+
+        Assertions.assertThat(imageRepository.findOrphanImageHashes(10)).containsExactly(HASH);
+        Assertions.assertThat(imageRepository.deleteOrphanImage(HASH)).isTrue();
+        Assertions.assertThat(imageRepository.findOrphanImageHashes(10)).isEmpty();
+    }
+
+    @Test
+    void findPostIdsWithDatabaseImages_shouldReturnNotMovedImagesAfterId() {
+        jdbcTemplate.update("UPDATE posts SET image = ? WHERE id IN (1, 2, 3)", new byte[]{1, 2, 3, 4});
+        imageRepository.moveDatabaseImageToPath(2L, IMAGE_PATH, HASH);
+
+        Assertions.assertThat(imageRepository.findPostIdsWithDatabaseImages(0L, 10)).containsExactly(1L, 3L);
+        Assertions.assertThat(imageRepository.findPostIdsWithDatabaseImages(1L, 1)).containsExactly(3L);
+    }
+
+    @Test
+    void moveDatabaseImageToPath_shouldKeepPathOfNewerUpload() {
+        imageRepository.referenceImage(VALID_ID, HASH, IMAGE_PATH);
+
+        boolean moved = imageRepository.moveDatabaseImageToPath(VALID_ID, "ef/01/ef01", "ef01");
+
+        Assertions.assertThat(moved).isFalse();
+        Assertions.assertThat(imageRepository.findImageMetadata(VALID_ID)).map(ImageMetadata::path).hasValue(IMAGE_PATH);
+    }
+
+    @Test
+    void findImageMetadata_shouldReturnRecordedMetadataOfSavedImage() {
+        Assertions.assertThat(imageRepository.findImageMetadata(VALID_ID)).isEmpty();
+        jdbcTemplate.update("UPDATE posts SET image = ? WHERE id = ?", new byte[]{1, 2, 3, 4}, VALID_ID);
+
+        boolean updated = imageRepository.updateImageMetadata(VALID_ID, HASH, "image/png");
+        Optional<ImageMetadata> metadata = imageRepository.findImageMetadata(VALID_ID);
+
+        Assertions.assertThat(updated).isTrue();
+        Assertions.assertThat(metadata).hasValueSatisfying(actual -> {
+            Assertions.assertThat(actual.path()).isNull();
+            Assertions.assertThat(actual.hash()).isEqualTo(HASH);
+            Assertions.assertThat(actual.contentType()).isEqualTo("image/png");
+            Assertions.assertThat(actual.updatedAt()).isNotNull();
+        });
+        Assertions.assertThat(imageRepository.findImageSize(VALID_ID)).hasValue(4L);
+        Assertions.assertThat(imageRepository.findImageMetadata(INVALID_ID)).isEmpty();
+    }
+
+    @Test
+    void findImageSlice_shouldReturnRangeOfImageWithHash() {
+        jdbcTemplate.update("UPDATE posts SET image = ?, image_hash = ? WHERE id = ?", new byte[]{1, 2, 3, 4}, HASH, VALID_ID);
+
+        Assertions.assertThat(imageRepository.findImageSlice(VALID_ID, HASH, 1, 2)).hasValue(new byte[]{2, 3});
+        Assertions.assertThat(imageRepository.findImageSlice(VALID_ID, "ef01", 1, 2)).isEmpty();
+        Assertions.assertThat(imageRepository.findImageSlice(INVALID_ID, HASH, 1, 2)).isEmpty();
+    }
+
+    @Test
+    void findImageSlice_shouldReturnRangeOfSharedImage() {
+        imageRepository.insertImage(HASH, new ByteArrayInputStream(new byte[]{1, 2, 3, 4}), 4);
+        imageRepository.acquireImage(HASH);
+        imageRepository.referenceImage(1L, HASH, null);
+        imageRepository.referenceImage(2L, HASH, null);
+
+        Assertions.assertThat(imageRepository.findImageSlice(1L, HASH, 1, 2)).hasValue(new byte[]{2, 3});
+        Assertions.assertThat(imageRepository.findImageSlice(2L, HASH, 2, 2)).hasValue(new byte[]{3, 4});
+        Assertions.assertThat(imageRepository.findImageSize(2L)).hasValue(4L);
+        Assertions.assertThat(imageRepository.findImageMetadata(2L)).map(ImageMetadata::hash).hasValue(HASH);
+    }
+
+    @Test
+    void saveImageVariant_shouldReplaceVariantOfPreviousImage() {
+        imageRepository.saveImageVariant(VALID_ID, "thumb", "ef01", new byte[]{1, 2});
+        imageRepository.saveImageVariant(VALID_ID, "thumb", HASH, new byte[]{3, 4});
+        imageRepository.saveImageVariant(INVALID_ID, "thumb", HASH, new byte[]{3, 4});
+
+        Assertions.assertThat(imageRepository.findImageVariant(VALID_ID, "thumb", HASH)).hasValue(new byte[]{3, 4});
+        Assertions.assertThat(imageRepository.findImageVariant(VALID_ID, "thumb", "ef01")).isEmpty();
+        Assertions.assertThat(imageRepository.findImageVariant(VALID_ID, "medium", HASH)).isEmpty();
+        Assertions.assertThat(imageRepository.findImageVariant(INVALID_ID, "thumb", HASH)).isEmpty();
+    }
+
+    private Long refCount(String hash) {
+        return jdbcTemplate.queryForObject("SELECT ref_count FROM images WHERE hash = ?", Long.class, hash);
+    }
+
+    @TestConfiguration
+    static class TestImageRepositoryConfig {
+        @Bean
+        public ImageRepository imageRepository(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
+            return new JdbcNativeImageRepositoryImpl(jdbcTemplate, eventPublisher);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.alex.blog.integration.repository;
 
+import com.alex.blog.cache.LivePostIdsCache;
+import com.alex.blog.event.PostDeletedEvent;
 import com.alex.blog.model.Post;
 import com.alex.blog.repository.PostManagementRepository;
 import com.alex.blog.repository.impl.JdbcNativePostManagementRepositoryImpl;
+import com.alex.blog.tag.TagDictionary;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -11,12 +14,14 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.jdbc.Sql;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,9 +36,15 @@ class PostManagementRepositoryIT {
     private PostManagementRepository postManagementRepository;
     @Autowired
     private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired
+    private TagDictionary tagDictionary;
 
-    private final static Post post = new Post(1L, "test title1", "test desc1", List.of("test_tag1"), new byte[]{1, 2, 3, 4}, 2L, 3L);
+    private final static Post post = new Post(1L, "test title1", "test desc1", List.of("test_tag1"), new byte[]{1, 2, 3, 4}, 2L, 3L, false);
     private final static Long VALID_ID = 1L;
+    private final static Long INVALID_ID = 1000000L;
+    private final static String TAGS_OF_POST_2 = "SELECT t.name FROM posts_tags pt JOIN tags t ON t.id = pt.tag_id WHERE pt.post_id = 2";
 
 
     @ParameterizedTest
@@ -47,6 +58,42 @@ class PostManagementRepositoryIT {
     }
 
 
+    @Test
+    void existsById_shouldAnswerLoadedIdsFromMemoryAndAskDatabaseForOthers() {
+        LivePostIdsCache livePostIdsCache = new LivePostIdsCache(jdbcTemplate, true, Duration.ZERO);
+        PostManagementRepository cachedRepository = new JdbcNativePostManagementRepositoryImpl(jdbcTemplate,
+                namedParameterJdbcTemplate, mock(ApplicationEventPublisher.class), livePostIdsCache, tagDictionary, 0);
+        livePostIdsCache.load();
+
+        jdbcTemplate.update("DELETE FROM posts WHERE id = 3");
+        jdbcTemplate.update("INSERT INTO posts (title, text) VALUES ('other instance title', 'other instance text')");
+        jdbcTemplate.update("DELETE FROM posts WHERE id = 2");
+        livePostIdsCache.onPostDeleted(new PostDeletedEvent(2L, List.of()));
+
+        Assertions.assertThat(cachedRepository.existsById(VALID_ID)).isTrue();
+        Assertions.assertThat(cachedRepository.existsById(2L)).isFalse();
+        Assertions.assertThat(cachedRepository.existsById(3L)).isTrue();
+        Assertions.assertThat(cachedRepository.existsById(4L)).isTrue();
+        Assertions.assertThat(cachedRepository.existsById(INVALID_ID)).isFalse();
+
+        livePostIdsCache.load();
+
+        Assertions.assertThat(cachedRepository.existsById(3L)).isFalse();
+    }
+
+    @Test
+    void existsById_shouldAskDatabaseForIdMissingFromMemory() {
+        LivePostIdsCache livePostIdsCache = new LivePostIdsCache(jdbcTemplate, true, Duration.ZERO);
+        PostManagementRepository cachedRepository = new JdbcNativePostManagementRepositoryImpl(jdbcTemplate,
+                namedParameterJdbcTemplate, mock(ApplicationEventPublisher.class), livePostIdsCache, tagDictionary, 0);
+        livePostIdsCache.load();
+
+        // missing from the bitmap like a post of another instance with a lower id committed after the load
+        livePostIdsCache.onPostDeleted(new PostDeletedEvent(2L, List.of()));
+
+        Assertions.assertThat(cachedRepository.existsById(2L)).isTrue();
+    }
+
     @ParameterizedTest
     @CsvSource(
             {"test title1,true", "unknown text, false"}
@@ -62,7 +109,7 @@ class PostManagementRepositoryIT {
 
         byte[] image = new byte[]{1, 2, 3, 4};
 
-        Assertions.assertThat(postManagementRepository.updateImage(VALID_ID, image));
+        jdbcTemplate.update("UPDATE posts SET image = ? WHERE id = ?", image, VALID_ID);
 
         Optional<byte[]> actualImage = postManagementRepository.getImage(VALID_ID);
 
@@ -72,19 +119,42 @@ class PostManagementRepositoryIT {
 
     @Test
     void delete_shouldDeletePost() {
-        postManagementRepository.delete(VALID_ID);
+        boolean deleted = postManagementRepository.delete(VALID_ID);
         Boolean expectedExists = jdbcTemplate.queryForObject("SELECT EXISTS(SELECT 1 FROM posts WHERE id = ?)", Boolean.class, VALID_ID);
 
+        Assertions.assertThat(deleted).isTrue();
         Assertions.assertThat(expectedExists).isFalse();
+        Assertions.assertThat(postManagementRepository.delete(VALID_ID)).isFalse();
     }
 
     @Test
     void incrementLikesCount_shouldReturnIncrementLikesCount() {
         Long expectedLikes = post.getLikesCount() + 1;
 
-        Long actualLikes = postManagementRepository.incrementLikesCount(VALID_ID);
+        Optional<Long> actualLikes = postManagementRepository.incrementLikesCount(VALID_ID);
+
+        Assertions.assertThat(actualLikes).hasValue(expectedLikes);
+        Assertions.assertThat(postManagementRepository.incrementLikesCount(INVALID_ID)).isEmpty();
+    }
+
 
-        Assertions.assertThat(actualLikes).isEqualTo(expectedLikes);
+    @Test
+    void incrementLikesCount_shouldAddToShardsUntilCompacted() {
+        PostManagementRepository shardedRepository = new JdbcNativePostManagementRepositoryImpl(jdbcTemplate,
+                namedParameterJdbcTemplate, mock(ApplicationEventPublisher.class), new LivePostIdsCache(jdbcTemplate, false, Duration.ZERO), tagDictionary, 4);
+
+        List<Long> actualLikes = List.of(shardedRepository.incrementLikesCount(VALID_ID).orElseThrow(),
+                shardedRepository.incrementLikesCount(VALID_ID).orElseThrow(),
+                shardedRepository.incrementLikesCount(VALID_ID).orElseThrow());
+        Long persistedBeforeCompaction = jdbcTemplate.queryForObject("SELECT likes_count FROM posts WHERE id = ?", Long.class, VALID_ID);
+        int compacted = shardedRepository.compactLikeShards(100);
+
+        Assertions.assertThat(actualLikes).containsExactly(3L, 4L, 5L);
+        Assertions.assertThat(persistedBeforeCompaction).isEqualTo(2L);
+        Assertions.assertThat(compacted).isPositive();
+        Assertions.assertThat(jdbcTemplate.queryForObject("SELECT likes_count FROM posts WHERE id = ?", Long.class, VALID_ID)).isEqualTo(5L);
+        Assertions.assertThat(shardedRepository.findLikesCount(VALID_ID)).hasValue(5L);
+        Assertions.assertThat(shardedRepository.incrementLikesCount(INVALID_ID)).isEmpty();
     }
 
 
@@ -94,37 +164,78 @@ class PostManagementRepositoryIT {
     void incrementCommentsCount_shouldReturnIncrementCommentsCount(int incValue) {
         Long expectedComments = post.getCommentsCount() + incValue;
 
-        Long actualComments = postManagementRepository.incrementCommentsCount(VALID_ID, (long) incValue);
+        Optional<Long> actualComments = postManagementRepository.incrementCommentsCount(VALID_ID, (long) incValue);
 
-        Assertions.assertThat(actualComments).isEqualTo(expectedComments);
+        Assertions.assertThat(actualComments).hasValue(expectedComments);
     }
 
     @Test
     void update_shouldReturnUpdatedPost() {
-        Post expectedPost = new Post(VALID_ID, "newUpdateTitle", "description", List.of("newUpdateTag"), new byte[]{1, 2, 3, 4}, 1L, 1L);
+        Post expectedPost = new Post(VALID_ID, "newUpdateTitle", "description", List.of("newUpdateTag"), new byte[]{1, 2, 3, 4}, 1L, 1L, false);
 
         Post actualPost = postManagementRepository.update(expectedPost);
 
         Assertions.assertThat(actualPost).isEqualTo(expectedPost);
     }
 
+    @Test
+    void update_shouldWriteOnlyChangedTags() {
+        Post givenPost = new Post(2L, "newUpdateTitle", "description", List.of("test_tag2", "newUpdateTag"), null, 1L, 1L, false);
+
+        postManagementRepository.update(givenPost);
+
+        Assertions.assertThat(jdbcTemplate.queryForList(TAGS_OF_POST_2, String.class))
+                .containsExactlyInAnyOrder("test_tag2", "newUpdateTag");
+    }
+
+    @Test
+    void update_shouldKeepUnchangedTags() {
+        Post givenPost = new Post(2L, "newUpdateTitle", "description", List.of("test_tag2", "test_tag1"), null, 1L, 1L, false);
+
+        postManagementRepository.update(givenPost);
+
+        Assertions.assertThat(jdbcTemplate.queryForList(TAGS_OF_POST_2, String.class))
+                .containsExactlyInAnyOrder("test_tag1", "test_tag2");
+        Assertions.assertThat(jdbcTemplate.queryForObject("SELECT title FROM posts WHERE id = 2", String.class))
+                .isEqualTo("newUpdateTitle");
+    }
+
     @Test
     void save_shouldReturnPersistPost() {
-        Post expectedPost = new Post(null, "newTitle", "newDescription", List.of("newCreateTag"), new byte[]{1, 2, 3, 4}, 0L, 0L);
+        Post expectedPost = new Post(null, "newTitle", "newDescription", List.of("newCreateTag"), new byte[]{1, 2, 3, 4}, 0L, 0L, false);
 
-        Post savedPost = postManagementRepository.save(expectedPost);
+        Optional<Post> savedPost = postManagementRepository.save(expectedPost);
 
-        Assertions.assertThat(savedPost).hasFieldOrPropertyWithValue("id", 4L);
+        Assertions.assertThat(savedPost).hasValueSatisfying(saved ->
+                Assertions.assertThat(saved).hasFieldOrPropertyWithValue("id", 4L));
+    }
+
+    @Test
+    void save_shouldReturnEmptyForTakenTitle() {
+        Post givenPost = new Post(null, "test title1", "newDescription", List.of("newCreateTag"), null, 0L, 0L, false);
+
+        Optional<Post> savedPost = postManagementRepository.save(givenPost);
+
+        Assertions.assertThat(savedPost).isEmpty();
+        Assertions.assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM posts_tags pt JOIN tags t ON t.id = pt.tag_id WHERE t.name = 'newCreateTag'", Long.class)).isZero();
     }
 
     @TestConfiguration
     static class TestPostManagementRepositoryConfig {
+        @Bean
+        public TagDictionary tagDictionary(JdbcTemplate jdbcTemplate) {
+            return new TagDictionary(jdbcTemplate);
+        }
+
         @Bean
         public PostManagementRepository postManagementRepository(
                 NamedParameterJdbcTemplate namedParameterJdbcTemplate,
-                JdbcTemplate jdbcTemplate) {
+                JdbcTemplate jdbcTemplate,
+                ApplicationEventPublisher eventPublisher,
+                TagDictionary tagDictionary) {
 
-            return new JdbcNativePostManagementRepositoryImpl(jdbcTemplate, namedParameterJdbcTemplate);
+            return new JdbcNativePostManagementRepositoryImpl(jdbcTemplate, namedParameterJdbcTemplate, eventPublisher,
+                    new LivePostIdsCache(jdbcTemplate, false, Duration.ZERO), tagDictionary, 0);
         }
     }
 
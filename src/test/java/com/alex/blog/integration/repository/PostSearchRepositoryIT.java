@@ -1,9 +1,14 @@
 package com.alex.blog.integration.repository;
 
+import com.alex.blog.cache.SearchCountCache;
 import com.alex.blog.model.Post;
 import com.alex.blog.repository.PostSearchRepository;
+import com.alex.blog.repository.dialect.H2SqlDialect;
 import com.alex.blog.repository.impl.JdbcNativePostSearchImpl;
 import com.alex.blog.search.Criteria;
+import com.alex.blog.search.Cursor;
+import com.alex.blog.search.index.TagBitmapIndex;
+import com.alex.blog.tag.TagDictionary;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -16,11 +21,14 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.jdbc.Sql;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -31,12 +39,14 @@ import java.util.stream.Stream;
 @ActiveProfiles("test")
 class PostSearchRepositoryIT {
 
-    private final static Post post = new Post(1L, "test title1", "test desc1", List.of("test_tag1"), null, 2L, 3L);
+    private final static Post post = new Post(1L, "test title1", "test desc1", List.of("test_tag1"), null, 2L, 3L, false);
 
     private final static Long VALID_ID=1L;
     private final static Long INVALID_ID=1000000L;
     @Autowired
     private JdbcNativePostSearchImpl jdbcNativePostSearchImpl;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
 
     @Test
@@ -67,6 +77,67 @@ class PostSearchRepositoryIT {
     }
 
 
+    @Test
+    void findPostsByCriteriaAndCursor_shouldSeekForwardAndBackward() {
+        Criteria criteria = new Criteria("test title", null);
+
+        Slice<Post> firstSlice = jdbcNativePostSearchImpl.findPostsByCriteriaAndCursor(criteria, Cursor.first(), 2);
+        Slice<Post> nextSlice = jdbcNativePostSearchImpl.findPostsByCriteriaAndCursor(criteria, Cursor.after(2L), 2);
+        Slice<Post> prevSlice = jdbcNativePostSearchImpl.findPostsByCriteriaAndCursor(criteria, Cursor.before(3L), 1);
+
+        Assertions.assertThat(firstSlice.getContent()).extracting(Post::getId).containsExactly(1L, 2L);
+        Assertions.assertThat(firstSlice.hasNext()).isTrue();
+        Assertions.assertThat(nextSlice.getContent()).extracting(Post::getId).containsExactly(3L);
+        Assertions.assertThat(nextSlice.hasNext()).isFalse();
+        Assertions.assertThat(prevSlice.getContent()).extracting(Post::getId).containsExactly(2L);
+        Assertions.assertThat(prevSlice.hasNext()).isTrue();
+    }
+
+
+    @Test
+    void findSliceByCriteriaAndPageable_shouldReturnSliceWithoutCount() {
+        Criteria criteria = new Criteria("test title", null);
+
+        Slice<Post> firstSlice = jdbcNativePostSearchImpl.findSliceByCriteriaAndPageable(criteria, PageRequest.of(0, 2));
+        Slice<Post> lastSlice = jdbcNativePostSearchImpl.findSliceByCriteriaAndPageable(criteria, PageRequest.of(1, 2));
+
+        Assertions.assertThat(firstSlice.getContent()).extracting(Post::getId).containsExactly(1L, 2L);
+        Assertions.assertThat(firstSlice.hasNext()).isTrue();
+        Assertions.assertThat(lastSlice.getContent()).extracting(Post::getId).containsExactly(3L);
+        Assertions.assertThat(lastSlice.hasNext()).isFalse();
+        Assertions.assertThat(lastSlice.hasPrevious()).isTrue();
+    }
+
+
+    @Test
+    void findPostsByCriteriaAndPageable_shouldReturnTextPreview() {
+        String longText = "a".repeat(200);
+        jdbcTemplate.update("INSERT INTO posts(title, text) VALUES ('long post', ?)", longText);
+
+        Page<Post> actualPage = jdbcNativePostSearchImpl.findPostsByCriteriaAndPageable(new Criteria("long post", null), PageRequest.of(0, 1));
+        Optional<Post> actualPost = jdbcNativePostSearchImpl.findPostById(4L);
+
+        Assertions.assertThat(actualPage.getContent().getFirst().getText()).isEqualTo("a".repeat(128));
+        Assertions.assertThat(actualPage.getContent().getFirst().isTextTruncated()).isTrue();
+        Assertions.assertThat(actualPost).hasValueSatisfying(post -> {
+            Assertions.assertThat(post.getText()).isEqualTo(longText);
+            Assertions.assertThat(post.isTextTruncated()).isFalse();
+        });
+    }
+
+
+    @Test
+    void exportPostsByCriteria_shouldStreamAllMatchingPostsWithTags() {
+        List<Post> actualPosts = new ArrayList<>();
+
+        jdbcNativePostSearchImpl.exportPostsByCriteria(new Criteria("", List.of("test_tag1")), actualPosts::add);
+
+        Assertions.assertThat(actualPosts).extracting(Post::getId).containsExactly(1L, 2L);
+        Assertions.assertThat(actualPosts.get(1).getTags()).containsExactlyInAnyOrder("test_tag1", "test_tag2");
+        Assertions.assertThat(actualPosts.getFirst().getText()).isEqualTo("test desc1");
+    }
+
+
     public static Stream<Arguments> getArgsForSearchByCriteria() {
         Pageable pageableOneSize = PageRequest.of(0, 1);
         Pageable pageableTwoSize = PageRequest.of(0, 2);
@@ -85,12 +156,19 @@ class PostSearchRepositoryIT {
     }
     @TestConfiguration
     static class TestPostSearchRepositoryConfig {
+        @Bean
+        public TagDictionary tagDictionary(JdbcTemplate jdbcTemplate) {
+            return new TagDictionary(jdbcTemplate);
+        }
+
         @Bean
         public PostSearchRepository postSearchRepository(
                 NamedParameterJdbcTemplate namedParameterJdbcTemplate,
-                JdbcTemplate jdbcTemplate) {
+                JdbcTemplate jdbcTemplate,
+                TagDictionary tagDictionary) {
 
-            return new JdbcNativePostSearchImpl(namedParameterJdbcTemplate, jdbcTemplate);
+            return new JdbcNativePostSearchImpl(namedParameterJdbcTemplate, jdbcTemplate,
+                    new TagBitmapIndex(jdbcTemplate, false), tagDictionary, new SearchCountCache(0, Duration.ZERO), new H2SqlDialect(), false, 128, 100);
         }
     }
 
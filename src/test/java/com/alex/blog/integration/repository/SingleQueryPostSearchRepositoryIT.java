@@ -0,0 +1,91 @@
+package com.alex.blog.integration.repository;
+
+import com.alex.blog.cache.SearchCountCache;
+import com.alex.blog.model.Post;
+import com.alex.blog.repository.PostSearchRepository;
+import com.alex.blog.repository.dialect.H2SqlDialect;
+import com.alex.blog.repository.impl.JdbcNativePostSearchImpl;
+import com.alex.blog.search.Criteria;
+import com.alex.blog.search.Cursor;
+import com.alex.blog.search.index.TagBitmapIndex;
+import com.alex.blog.tag.TagDictionary;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+@JdbcTest
+@Sql("classpath:data-test.sql")
+@ActiveProfiles("test")
+class SingleQueryPostSearchRepositoryIT {
+
+    @Autowired
+    private PostSearchRepository postSearchRepository;
+
+    @Test
+    void findPostsByCriteriaAndPageable_shouldReturnTotalAndTagsInOneQuery() {
+        Page<Post> actualPage = postSearchRepository.findPostsByCriteriaAndPageable(
+                new Criteria("test title", List.of("test_tag1")), PageRequest.of(1, 1));
+
+        Assertions.assertThat(actualPage.getContent()).extracting(Post::getId).containsExactly(2L);
+        Assertions.assertThat(actualPage.getContent().getFirst().getTags()).containsExactlyInAnyOrder("test_tag1", "test_tag2");
+        Assertions.assertThat(actualPage.getTotalElements()).isEqualTo(2L);
+    }
+
+    @Test
+    void findPostsByCriteriaAndPageable_shouldCountPagePastTheEnd() {
+        Page<Post> actualPage = postSearchRepository.findPostsByCriteriaAndPageable(
+                new Criteria("test title", List.of()), PageRequest.of(5, 2));
+
+        Assertions.assertThat(actualPage.getContent()).isEmpty();
+        Assertions.assertThat(actualPage.getTotalElements()).isEqualTo(3L);
+    }
+
+    @Test
+    void findPostsByCriteriaAndCursor_shouldReturnTags() {
+        Slice<Post> actualSlice = postSearchRepository.findPostsByCriteriaAndCursor(
+                new Criteria("test title", List.of()), Cursor.after(2L), 2);
+
+        Assertions.assertThat(actualSlice.getContent()).extracting(Post::getId).containsExactly(3L);
+        Assertions.assertThat(actualSlice.getContent().getFirst().getTags()).containsExactly("test_tag3");
+    }
+
+    @Test
+    void findPostById_shouldReturnTags() {
+        Optional<Post> actualPost = postSearchRepository.findPostById(1L);
+
+        Assertions.assertThat(actualPost).hasValueSatisfying(post ->
+                Assertions.assertThat(post.getTags()).containsExactly("test_tag1"));
+    }
+
+    @TestConfiguration
+    static class TestSingleQueryPostSearchRepositoryConfig {
+        @Bean
+        public TagDictionary tagDictionary(JdbcTemplate jdbcTemplate) {
+            return new TagDictionary(jdbcTemplate);
+        }
+
+        @Bean
+        public PostSearchRepository postSearchRepository(
+                NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                JdbcTemplate jdbcTemplate,
+                TagDictionary tagDictionary) {
+
+            return new JdbcNativePostSearchImpl(namedParameterJdbcTemplate, jdbcTemplate,
+                    new TagBitmapIndex(jdbcTemplate, false), tagDictionary, new SearchCountCache(0, Duration.ZERO), new H2SqlDialect(), true, 128, 100);
+        }
+    }
+}
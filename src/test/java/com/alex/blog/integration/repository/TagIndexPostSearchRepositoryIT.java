@@ -0,0 +1,155 @@
+package com.alex.blog.integration.repository;
+
+import com.alex.blog.api.dto.TagSuggestionDto;
+import com.alex.blog.event.PostUpdatedEvent;
+import com.alex.blog.cache.SearchCountCache;
+import com.alex.blog.model.Post;
+import com.alex.blog.repository.PostSearchRepository;
+import com.alex.blog.repository.dialect.H2SqlDialect;
+import com.alex.blog.repository.impl.JdbcNativePostSearchImpl;
+import com.alex.blog.search.Criteria;
+import com.alex.blog.search.Cursor;
+import com.alex.blog.search.index.TagBitmapIndex;
+import com.alex.blog.tag.TagDictionary;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@JdbcTest
+@Sql("classpath:data-test.sql")
+@ActiveProfiles("test")
+class TagIndexPostSearchRepositoryIT {
+
+    @Autowired
+    private PostSearchRepository postSearchRepository;
+    @Autowired
+    private TagBitmapIndex tagBitmapIndex;
+
+    @BeforeEach
+    void setUp() {
+        tagBitmapIndex.rebuild();
+    }
+
+    @Test
+    void findPostsByCriteriaAndPageable_shouldPageTagsInIndex() {
+        Page<Post> actualPage = postSearchRepository.findPostsByCriteriaAndPageable(
+                new Criteria(null, List.of("test_tag1")), PageRequest.of(1, 1));
+
+        Assertions.assertThat(actualPage.getContent()).extracting(Post::getId).containsExactly(2L);
+        Assertions.assertThat(actualPage.getContent().getFirst().getTags()).containsExactlyInAnyOrder("test_tag1", "test_tag2");
+        Assertions.assertThat(actualPage.getTotalElements()).isEqualTo(2L);
+    }
+
+    @Test
+    void findPostsByCriteriaAndPageable_shouldIntersectTags() {
+        Page<Post> actualPage = postSearchRepository.findPostsByCriteriaAndPageable(
+                new Criteria("", List.of("test_tag1", "test_tag2")), PageRequest.of(0, 10));
+
+        Assertions.assertThat(actualPage.getContent()).extracting(Post::getId).containsExactly(2L);
+    }
+
+    @Test
+    void findPostsByCriteriaAndPageable_shouldReturnEmptyPageForUnknownTag() {
+        Page<Post> actualPage = postSearchRepository.findPostsByCriteriaAndPageable(
+                new Criteria("test title", List.of("test_tag1", "unknown")), PageRequest.of(0, 10));
+
+        Assertions.assertThat(actualPage.getContent()).isEmpty();
+        Assertions.assertThat(actualPage.getTotalElements()).isZero();
+    }
+
+    @Test
+    void findPostsByCriteriaAndPageable_shouldCombineTitleWithIndexedTags() {
+        Page<Post> actualPage = postSearchRepository.findPostsByCriteriaAndPageable(
+                new Criteria("title2", List.of("test_tag1")), PageRequest.of(0, 10));
+
+        Assertions.assertThat(actualPage.getContent()).extracting(Post::getId).containsExactly(2L);
+    }
+
+    @Test
+    void findPostsByCriteriaAndCursor_shouldSeekInIndex() {
+        Criteria criteria = new Criteria(null, List.of("test_tag1"));
+
+        Slice<Post> nextSlice = postSearchRepository.findPostsByCriteriaAndCursor(criteria, Cursor.after(1L), 1);
+        Slice<Post> prevSlice = postSearchRepository.findPostsByCriteriaAndCursor(criteria, Cursor.before(2L), 1);
+
+        Assertions.assertThat(nextSlice.getContent()).extracting(Post::getId).containsExactly(2L);
+        Assertions.assertThat(nextSlice.hasNext()).isFalse();
+        Assertions.assertThat(prevSlice.getContent()).extracting(Post::getId).containsExactly(1L);
+        Assertions.assertThat(prevSlice.hasNext()).isFalse();
+    }
+
+    @Test
+    void exportPostsByCriteria_shouldStreamNothingForUnknownTag() {
+        List<Post> actualPosts = new ArrayList<>();
+
+        postSearchRepository.exportPostsByCriteria(new Criteria("", List.of("unknown")), actualPosts::add);
+        postSearchRepository.exportPostsByCriteria(new Criteria("title", List.of("test_tag1", "unknown")), actualPosts::add);
+
+        Assertions.assertThat(actualPosts).isEmpty();
+    }
+
+    @Test
+    void exportPostsByCriteria_shouldStreamIndexedTags() {
+        List<Post> actualPosts = new ArrayList<>();
+
+        postSearchRepository.exportPostsByCriteria(new Criteria("", List.of("test_tag1")), actualPosts::add);
+
+        Assertions.assertThat(actualPosts).extracting(Post::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void findMostUsedByPrefix_shouldReturnTopTagsByPostsCount() {
+        Assertions.assertThat(tagBitmapIndex.findMostUsedByPrefix("test_", 2))
+                .hasValue(List.of(new TagSuggestionDto("test_tag1", 2L), new TagSuggestionDto("test_tag2", 1L)));
+        Assertions.assertThat(tagBitmapIndex.findMostUsedByPrefix("other", 2)).hasValue(List.of());
+    }
+
+    @Test
+    void onPostUpdated_shouldMovePostBetweenTags() {
+        tagBitmapIndex.onPostUpdated(new PostUpdatedEvent(1L, List.of("test_tag1"), List.of("test_tag3")));
+
+        Assertions.assertThat(tagBitmapIndex.findPostsWithAllTags(List.of("test_tag1")))
+                .hasValueSatisfying(ids -> Assertions.assertThat(ids.toArray()).containsExactly(2L));
+        Assertions.assertThat(tagBitmapIndex.findPostsWithAllTags(List.of("test_tag3")))
+                .hasValueSatisfying(ids -> Assertions.assertThat(ids.toArray()).containsExactly(1L, 3L));
+    }
+
+    @TestConfiguration
+    static class TestTagIndexPostSearchRepositoryConfig {
+        @Bean
+        public TagDictionary tagDictionary(JdbcTemplate jdbcTemplate) {
+            return new TagDictionary(jdbcTemplate);
+        }
+
+        @Bean
+        public TagBitmapIndex tagBitmapIndex(JdbcTemplate jdbcTemplate) {
+            return new TagBitmapIndex(jdbcTemplate, true);
+        }
+
+        @Bean
+        public PostSearchRepository postSearchRepository(
+                NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                JdbcTemplate jdbcTemplate,
+                TagBitmapIndex tagBitmapIndex,
+                TagDictionary tagDictionary) {
+
+            return new JdbcNativePostSearchImpl(namedParameterJdbcTemplate, jdbcTemplate, tagBitmapIndex, tagDictionary,
+                    new SearchCountCache(0, Duration.ZERO), new H2SqlDialect(), false, 128, 100);
+        }
+    }
+}
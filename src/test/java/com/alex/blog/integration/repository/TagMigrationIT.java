@@ -0,0 +1,99 @@
+package com.alex.blog.integration.repository;
+
+import com.alex.blog.tag.TagDictionary;
+import com.alex.blog.tag.TagMigration;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+@JdbcTest
+@Sql("classpath:data-test.sql")
+@ActiveProfiles("test")
+class TagMigrationIT {
+
+    private final static String TAGS_OF_POST = "SELECT t.name FROM posts_tags pt JOIN tags t ON t.id = pt.tag_id WHERE pt.post_id = ?";
+
+    @Autowired
+    private TagMigration tagMigration;
+    @Autowired
+    private TagDictionary tagDictionary;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void migrate_shouldMoveTagNamesToTagIdsInBatches() {
+        jdbcTemplate.update("DELETE FROM posts_tags");
+        jdbcTemplate.update("""
+                INSERT INTO post_tags (post_id, tag)
+                VALUES (1, 'test_tag1'), (2, 'test_tag1'), (2, 'migrated_tag'), (3, 'test_tag3')
+                """);
+
+        int migrated = tagMigration.migrate();
+
+        Assertions.assertThat(migrated).isEqualTo(3);
+        Assertions.assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM post_tags", Long.class)).isZero();
+        Assertions.assertThat(jdbcTemplate.queryForList(TAGS_OF_POST, String.class, 2L))
+                .containsExactlyInAnyOrder("test_tag1", "migrated_tag");
+        Assertions.assertThat(jdbcTemplate.queryForList(TAGS_OF_POST, String.class, 3L)).containsExactly("test_tag3");
+        Assertions.assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tags WHERE name = 'test_tag1'", Long.class))
+                .isEqualTo(1);
+        Assertions.assertThat(tagMigration.migrate()).isZero();
+    }
+
+    @Test
+    void findOrCreateIds_shouldInsertOnlyNewTags() {
+        Map<String, Integer> ids = tagDictionary.findOrCreateIds(List.of("test_tag1", "dictionary_tag", "dictionary_tag"));
+        Map<String, Integer> idsAgain = tagDictionary.findOrCreateIds(List.of("dictionary_tag"));
+
+        Assertions.assertThat(ids).containsOnlyKeys("test_tag1", "dictionary_tag");
+        Assertions.assertThat(idsAgain).containsEntry("dictionary_tag", ids.get("dictionary_tag"));
+        Assertions.assertThat(tagDictionary.findNames(ids.values()))
+                .containsEntry(ids.get("test_tag1"), "test_tag1")
+                .containsEntry(ids.get("dictionary_tag"), "dictionary_tag");
+        Assertions.assertThat(tagDictionary.findIds(List.of("unknown_tag"))).isEmpty();
+        Assertions.assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tags WHERE name = 'dictionary_tag'", Long.class))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void findOrCreateIds_shouldNotRememberTagOfRolledBackTransaction() {
+        TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        newTransaction.executeWithoutResult(status -> {
+            Assertions.assertThat(tagDictionary.findOrCreateIds(List.of("rolled_back_tag"))).containsOnlyKeys("rolled_back_tag");
+            Assertions.assertThat(tagDictionary.findIds(List.of("rolled_back_tag"))).containsOnlyKeys("rolled_back_tag");
+            status.setRollbackOnly();
+        });
+
+        Assertions.assertThat(tagDictionary.findIds(List.of("rolled_back_tag"))).isEmpty();
+    }
+
+    @TestConfiguration
+    static class TestTagMigrationConfig {
+        @Bean
+        public TagMigration tagMigration(JdbcTemplate jdbcTemplate) {
+            return new TagMigration(jdbcTemplate, TransactionOperations.withoutTransaction(), 1);
+        }
+
+        @Bean
+        public TagDictionary tagDictionary(JdbcTemplate jdbcTemplate) {
+            return new TagDictionary(jdbcTemplate);
+        }
+    }
+}
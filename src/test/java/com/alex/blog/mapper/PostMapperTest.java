@@ -17,7 +17,7 @@ class PostMapperTest {
 
     @BeforeEach
     void setUp() {
-        post = new Post(null, "test title1", "test desc1", List.of("test_tag1"), null, 0L, 0L);
+        post = new Post(null, "test title1", "test desc1", List.of("test_tag1"), null, 0L, 0L, false);
         ;
     }
 
@@ -1,14 +1,18 @@
 package com.alex.blog.service;
 
 import com.alex.blog.api.dto.CommentCreateDto;
+import com.alex.blog.api.dto.CommentPageDto;
+import com.alex.blog.api.dto.CommentPageRequestDto;
 import com.alex.blog.api.dto.CommentReadDto;
 import com.alex.blog.api.dto.CommentUpdateDto;
 import com.alex.blog.config.MessagesConfig;
 import com.alex.blog.exception.EntityNotFoundException;
+import com.alex.blog.exception.InvalidCursorException;
 import com.alex.blog.mapper.CommentMapper;
 import com.alex.blog.model.Comment;
 import com.alex.blog.repository.CommentRepository;
 import com.alex.blog.repository.PostManagementRepository;
+import com.alex.blog.search.Cursor;
 import com.alex.blog.service.impl.CommentServiceImpl;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -25,6 +29,7 @@ import org.springframework.context.support.ResourceBundleMessageSource;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 
@@ -98,9 +103,8 @@ class CommentServiceTest {
     void saveComment_shouldSaveCommentAndReturnPersistComment() {
         CommentCreateDto givenDto = new CommentCreateDto("", VALID_ID);
         CommentReadDto commentReadDto = new CommentReadDto(VALID_ID, "text comment", VALID_ID);
-        when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
         when(commentMapper.toComment(Mockito.any(CommentCreateDto.class))).thenReturn(comment);
-        when(commentRepository.save(Mockito.any(Comment.class))).thenReturn(comment);
+        when(commentRepository.save(Mockito.any(Comment.class))).thenReturn(Optional.of(comment));
         when(commentMapper.toCommentReadDto(comment)).thenReturn(commentReadDto);
 
         CommentReadDto actualDto = commentService.saveComment(VALID_ID, givenDto);
@@ -108,53 +112,96 @@ class CommentServiceTest {
         assertThat(actualDto)
                 .isEqualTo(commentReadDto)
                 .hasFieldOrPropertyWithValue(Comment.Fields.id, VALID_ID);
-
+        verify(postManagementRepository, times(0)).existsById(VALID_ID);
+        verify(postManagementRepository, times(1)).incrementCommentsCount(VALID_ID, 1L);
     }
 
     @Test
     void saveComment_shouldThrowPostEntityNotFoundExceptionFail() {
         CommentCreateDto givenDto = new CommentCreateDto("", INVALID_ID);
-        when(postManagementRepository.existsById(INVALID_ID)).thenReturn(false);
+        when(commentMapper.toComment(givenDto)).thenReturn(comment);
+        when(commentRepository.save(comment)).thenReturn(Optional.empty());
 
         assertThatExceptionOfType(EntityNotFoundException.class)
                 .isThrownBy(() -> commentService.saveComment(INVALID_ID, givenDto))
                 .withMessage(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{INVALID_ID}, Locale.ENGLISH));
 
-        verify(commentMapper, times(0)).toComment(givenDto);
-        verify(commentRepository, times(0)).save(comment);
         verify(commentMapper, times(0)).toCommentReadDto(comment);
+        verify(postManagementRepository, times(0)).incrementCommentsCount(INVALID_ID, 1L);
+    }
+
+    @Test
+    void saveComments_shouldIncrementCommentsCountOnceAndSaveAllComments() {
+        List<CommentCreateDto> givenDtos = List.of(new CommentCreateDto("test comment", VALID_ID),
+                new CommentCreateDto("test comment", VALID_ID));
+        CommentReadDto commentReadDto = new CommentReadDto(VALID_ID, "test comment", VALID_ID);
+        when(postManagementRepository.incrementCommentsCount(VALID_ID, 2L)).thenReturn(Optional.of(5L));
+        when(commentMapper.toComment(Mockito.any(CommentCreateDto.class))).thenReturn(comment);
+        when(commentRepository.saveAll(List.of(comment, comment))).thenReturn(List.of(comment, comment));
+        when(commentMapper.toCommentReadDto(comment)).thenReturn(commentReadDto);
+
+        List<CommentReadDto> actualDtos = commentService.saveComments(VALID_ID, givenDtos);
+
+        assertThat(actualDtos).containsExactly(commentReadDto, commentReadDto);
+        verify(postManagementRepository, times(1)).incrementCommentsCount(VALID_ID, 2L);
+        verify(commentRepository, times(0)).save(Mockito.any(Comment.class));
+    }
+
+    @Test
+    void saveComments_shouldThrowPostEntityNotFoundExceptionFail() {
+        List<CommentCreateDto> givenDtos = List.of(new CommentCreateDto("test comment", INVALID_ID));
+        when(postManagementRepository.incrementCommentsCount(INVALID_ID, 1L)).thenReturn(Optional.empty());
+
+        assertThatExceptionOfType(EntityNotFoundException.class)
+                .isThrownBy(() -> commentService.saveComments(INVALID_ID, givenDtos))
+                .withMessage(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{INVALID_ID}, Locale.ENGLISH));
+
+        verify(commentRepository, times(0)).saveAll(Mockito.anyList());
     }
 
     @Test
     void updateComment_shouldReturnUpdatedCommentSuccess() {
         CommentReadDto expectedDto = new CommentReadDto(VALID_ID, "updated comment", VALID_ID);
         CommentUpdateDto givenDto = new CommentUpdateDto(VALID_ID, "updated comment", VALID_ID);
+        Comment updatedComment = new Comment(VALID_ID, "updated comment", VALID_ID);
 
-        when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
-        when(commentRepository.findById(VALID_ID)).thenReturn(Optional.of(comment));
-        when(commentRepository.update(comment)).thenReturn(comment);
-        Mockito.doNothing().when(commentMapper).updateComment(givenDto, comment);
-        when(commentMapper.toCommentReadDto(comment)).thenReturn(expectedDto);
+        when(commentRepository.update(updatedComment)).thenReturn(Optional.of(updatedComment));
+        when(commentMapper.toCommentReadDto(updatedComment)).thenReturn(expectedDto);
+
+        CommentReadDto actualDto = commentService.updateComment(VALID_ID, VALID_ID, givenDto);
+
+        assertThat(actualDto).isEqualTo(expectedDto);
+        verify(commentRepository, times(1)).update(updatedComment);
+        verify(postManagementRepository, times(0)).existsById(VALID_ID);
+    }
+
+    @Test
+    void updateComment_shouldKeepTextWhenItIsMissing() {
+        CommentReadDto expectedDto = new CommentReadDto(VALID_ID, "test comment1", VALID_ID);
+        CommentUpdateDto givenDto = new CommentUpdateDto(VALID_ID, null, VALID_ID);
+        Comment keptComment = new Comment(VALID_ID, "test comment1", VALID_ID);
+
+        when(commentRepository.update(new Comment(VALID_ID, null, VALID_ID))).thenReturn(Optional.of(keptComment));
+        when(commentMapper.toCommentReadDto(keptComment)).thenReturn(expectedDto);
 
         CommentReadDto actualDto = commentService.updateComment(VALID_ID, VALID_ID, givenDto);
 
         assertThat(actualDto).isEqualTo(expectedDto);
-        verify(commentRepository, times(1)).update(comment);
+        verify(commentRepository, times(1)).update(new Comment(VALID_ID, null, VALID_ID));
     }
 
     @Test
     void updateComment_shouldPostThrowEntityNotFoundExceptionFail() {
         CommentUpdateDto givenDto = new CommentUpdateDto(VALID_ID, "", VALID_ID);
 
+        when(commentRepository.update(Mockito.any(Comment.class))).thenReturn(Optional.empty());
         when(postManagementRepository.existsById(INVALID_ID)).thenReturn(false);
 
         assertThatExceptionOfType(EntityNotFoundException.class)
                .isThrownBy(() -> commentService.updateComment(INVALID_ID, INVALID_ID, givenDto))
                 .withMessage(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{INVALID_ID}, Locale.ENGLISH));
 
-        verify(commentMapper, times(0)).updateComment(givenDto, comment);
-        verify(commentRepository, times(0)).update(comment);
-        verify(commentMapper, times(0)).toCommentReadDto(comment);
+        verify(commentMapper, times(0)).toCommentReadDto(Mockito.any(Comment.class));
     }
 
 
@@ -162,20 +209,30 @@ class CommentServiceTest {
     void updateComment_shouldCommentThrowEntityNotFoundExceptionFail() {
         CommentUpdateDto givenDto = new CommentUpdateDto(INVALID_ID, "", VALID_ID);
 
+        when(commentRepository.update(Mockito.any(Comment.class))).thenReturn(Optional.empty());
         when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
 
         assertThatExceptionOfType(EntityNotFoundException.class)
                 .isThrownBy(() -> commentService.updateComment(VALID_ID, INVALID_ID, givenDto))
                 .withMessage(messageSource.getMessage(MessageKey.COMMENT_NOT_FOUND, new Object[]{INVALID_ID}, Locale.ENGLISH));
 
-        verify(commentMapper, times(0)).updateComment(givenDto, comment);
-        verify(commentRepository, times(0)).update(comment);
-        verify(commentMapper, times(0)).toCommentReadDto(comment);
+        verify(commentMapper, times(0)).toCommentReadDto(Mockito.any(Comment.class));
     }
 
+    @Test
+    void deleteComment_shouldDeleteCommentAndDecrementCommentsCountSuccess() {
+        when(commentRepository.delete(VALID_ID, VALID_ID)).thenReturn(true);
+
+        commentService.deleteComment(VALID_ID, VALID_ID);
+
+        verify(postManagementRepository, times(1)).incrementCommentsCount(VALID_ID, -1L);
+        verify(postManagementRepository, times(0)).existsById(VALID_ID);
+        verify(commentRepository, times(0)).findById(VALID_ID);
+    }
 
     @Test
     void deleteComment_shouldPostThrowEntityNotFoundExceptionFail() {
+        when(commentRepository.delete(INVALID_ID, INVALID_ID)).thenReturn(false);
         when(postManagementRepository.existsById(INVALID_ID)).thenReturn(false);
 
 
@@ -183,19 +240,46 @@ class CommentServiceTest {
                 .isThrownBy(() -> commentService.deleteComment(INVALID_ID, INVALID_ID))
                 .withMessage(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{INVALID_ID}, Locale.ENGLISH));
 
-        verify(commentRepository, times(0)).delete(INVALID_ID);
+        verify(postManagementRepository, times(0)).incrementCommentsCount(INVALID_ID, -1L);
     }
 
     @Test
     void findCommentsByPostId_shouldCommentThrowEntityNotFoundExceptionFail() {
+        when(commentRepository.delete(VALID_ID, INVALID_ID)).thenReturn(false);
         when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
-        when(commentRepository.findById(INVALID_ID)).thenReturn(Optional.empty());
 
         assertThatExceptionOfType(EntityNotFoundException.class)
                 .isThrownBy(() -> commentService.deleteComment(VALID_ID, INVALID_ID))
                 .withMessage(messageSource.getMessage(MessageKey.COMMENT_NOT_FOUND, new Object[]{INVALID_ID}, Locale.ENGLISH));
 
-        verify(commentRepository, times(0)).delete(INVALID_ID);
+        verify(postManagementRepository, times(0)).incrementCommentsCount(VALID_ID, -1L);
+    }
+
+    @Test
+    void findCommentsPageByPostId_shouldReturnPageWithNextCursor() {
+        Comment nextComment = new Comment(4L, "test comment4", VALID_ID);
+        CommentReadDto commentReadDto = new CommentReadDto(VALID_ID, "test comment", VALID_ID);
+        when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
+        when(commentRepository.findCommentsByPostIdAfter(VALID_ID, 0L, 2)).thenReturn(List.of(comment, nextComment));
+        when(commentMapper.toCommentReadDto(comment)).thenReturn(commentReadDto);
+
+        CommentPageDto actualPage = commentService.findCommentsPageByPostId(VALID_ID, new CommentPageRequestDto(1, null));
+
+        assertThat(actualPage.comments()).containsExactly(commentReadDto);
+        assertThat(actualPage.hasNext()).isTrue();
+        assertThat(actualPage.next()).isEqualTo(Cursor.after(VALID_ID).encode());
+    }
+
+    @Test
+    void findCommentsPageByPostId_shouldThrowInvalidCursorExceptionForBackwardCursor() {
+        String cursor = Cursor.before(4L).encode();
+        when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
+
+        assertThatExceptionOfType(InvalidCursorException.class)
+                .isThrownBy(() -> commentService.findCommentsPageByPostId(VALID_ID, new CommentPageRequestDto(1, cursor)))
+                .withMessage(messageSource.getMessage(MessageKey.INVALID_CURSOR_EX, new Object[]{cursor}, Locale.ENGLISH));
+
+        verify(commentRepository, times(0)).findCommentsByPostIdAfter(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyInt());
     }
 
 }
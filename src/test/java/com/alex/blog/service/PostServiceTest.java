@@ -4,10 +4,16 @@ import com.alex.blog.api.dto.PostCreateDto;
 import com.alex.blog.api.dto.PostReadDto;
 import com.alex.blog.api.dto.PostUpdateDto;
 import com.alex.blog.exception.EntityNotFoundException;
+import com.alex.blog.exception.ImageNotFoundException;
 import com.alex.blog.exception.TitleAlreadyExistsException;
+import com.alex.blog.image.ImageVariant;
+import com.alex.blog.image.ImageVariantGenerator;
+import com.alex.blog.image.PostImage;
 import com.alex.blog.mapper.PostMapper;
+import com.alex.blog.model.ImageMetadata;
 import com.alex.blog.model.Post;
 import com.alex.blog.repository.CommentRepository;
+import com.alex.blog.repository.ImageRepository;
 import com.alex.blog.repository.PostManagementRepository;
 import com.alex.blog.repository.PostSearchRepository;
 import org.junit.jupiter.api.Test;
@@ -15,12 +21,15 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.MessageSource;
+import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
@@ -42,6 +51,10 @@ class PostServiceTest {
     private PostMapper postMapper;
     @MockitoBean
     CommentRepository commentRepository;
+    @MockitoBean
+    private ImageRepository imageRepository;
+    @MockitoBean
+    private ImageVariantGenerator imageVariantGenerator;
     @Autowired
     private MessageSource messageSource;
     @Autowired
@@ -49,7 +62,9 @@ class PostServiceTest {
 
     private final static Long VALID_ID = 1L;
     private final static Long INVALID_ID = 10000L;
-    private final static Post post = new Post(1L, "test title1", "test desc1", List.of("test_tag1"), new byte[]{1,2,3,4}, 2L, 3L);
+    // SHA-256 of the image {1, 2, 3, 4}
+    private final static String IMAGE_HASH = "9f64a747e1b97f131fabb6b447296c9b6f0201e79fb3c5356e6c77e89b6a806a";
+    private final static Post post = new Post(1L, "test title1", "test desc1", List.of("test_tag1"), new byte[]{1,2,3,4}, 2L, 3L, false);
     PostReadDto expectedDto = new PostReadDto(1L, "test title1", "test desc1", List.of("test_tag1"), 2L, 3L);
 
     @Test
@@ -75,8 +90,7 @@ class PostServiceTest {
     @Test
     void incrementLikesCount_shouldReturnIncLikesCountSuccess() {
         Long expectedLikes = 100L;
-        when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
-        when(postManagementRepository.incrementLikesCount(VALID_ID)).thenReturn(expectedLikes);
+        when(postManagementRepository.incrementLikesCount(VALID_ID)).thenReturn(Optional.of(expectedLikes));
 
         Long actualLikes = postService.incrementLikesCount(VALID_ID);
 
@@ -85,7 +99,7 @@ class PostServiceTest {
 
     @Test
     void incrementLikesCount_shouldPostThrowEntityNotFoundException() {
-        when(postManagementRepository.existsById(INVALID_ID)).thenReturn(false);
+        when(postManagementRepository.incrementLikesCount(INVALID_ID)).thenReturn(Optional.empty());
 
         assertThatExceptionOfType(EntityNotFoundException.class)
                 .isThrownBy(() -> postService.incrementLikesCount(INVALID_ID))
@@ -125,9 +139,8 @@ class PostServiceTest {
     void savePost_shouldReturnPersistentPostSuccess() {
         PostReadDto expectedDto = new PostReadDto(1L, "testTitle1", "test desc1", List.of("test_tag1"), 2L, 3L);
         PostCreateDto givenDto = new PostCreateDto("testTitle", "test text", List.of("test_tag1"));
-        when(postManagementRepository.existsByTitle(givenDto.title())).thenReturn(false);
         when(postMapper.toPost(Mockito.any(PostCreateDto.class))).thenReturn(post);
-        when(postManagementRepository.save(Mockito.any(Post.class))).thenReturn(post);
+        when(postManagementRepository.save(Mockito.any(Post.class))).thenReturn(Optional.of(post));
         when(postMapper.toPostReadDto(post)).thenReturn(expectedDto);
 
         PostReadDto actualDto = postService.savePost(givenDto);
@@ -142,61 +155,108 @@ class PostServiceTest {
     @Test
     void savePost_shouldThrowTitleAlreadyExistsExceptionFail() {
         PostCreateDto givenDto = new PostCreateDto("testTitle", "test text", List.of("test_tag1"));
-        when(postManagementRepository.existsByTitle(givenDto.title())).thenReturn(true);
+        when(postMapper.toPost(Mockito.any(PostCreateDto.class))).thenReturn(post);
+        when(postManagementRepository.save(Mockito.any(Post.class))).thenReturn(Optional.empty());
 
         assertThatExceptionOfType(TitleAlreadyExistsException.class)
                 .isThrownBy(() -> postService.savePost(givenDto))
                 .withMessage(messageSource.getMessage(MessageKey.POST_TITLE_EXISTS_EX, new Object[]{givenDto.title()}, Locale.ENGLISH));
 
-        verify(postManagementRepository, Mockito.times(0)).save(post);
+        verify(postManagementRepository, Mockito.times(0)).existsByTitle(givenDto.title());
         verify(postMapper, Mockito.times(0)).toPostReadDto(post);
     }
 
     @Test
     void deletePost_shouldCallDeletePostSuccess() {
-        when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
-        doNothing().when(postManagementRepository).delete(VALID_ID);
-        doNothing().when(commentRepository).deleteByPostId(VALID_ID);
+        when(postManagementRepository.delete(VALID_ID)).thenReturn(true);
 
         postService.deletePost(VALID_ID);
 
         verify(postManagementRepository, Mockito.times(1)).delete(VALID_ID);
-        verify(commentRepository, Mockito.times(1)).deleteByPostId(VALID_ID);
+        verify(postManagementRepository, Mockito.times(0)).existsById(VALID_ID);
+        verify(imageRepository).releaseImage(VALID_ID);
 
     }
 
     @Test
     void deletePost_shouldThrowEntityNotFoundException() {
-        when(postManagementRepository.existsById(INVALID_ID)).thenReturn(false);
+        when(postManagementRepository.delete(INVALID_ID)).thenReturn(false);
 
 
         assertThatExceptionOfType(EntityNotFoundException.class)
                 .isThrownBy(() -> postService.deletePost(INVALID_ID))
                 .withMessage(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{INVALID_ID}, Locale.ENGLISH));
 
-        verify(postManagementRepository, Mockito.times(0)).delete(INVALID_ID);
-        verify(commentRepository, Mockito.times(0)).deleteByPostId(INVALID_ID);
-
 
     }
 
     @Test
-    void getImage_shouldReturnArrayBytesSuccess() {
+    void getImage_shouldReturnArrayBytesSuccess() throws IOException {
         byte[] expectedImage = new byte[]{1, 2, 3, 4};
         when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
-        when(postManagementRepository.getImage(VALID_ID)).thenReturn(Optional.of(expectedImage));
+        ImageMetadata metadata = new ImageMetadata(null, IMAGE_HASH, "image/png", Instant.now());
+        when(imageRepository.findImageMetadata(VALID_ID)).thenReturn(Optional.of(metadata));
+        when(imageRepository.findImageSize(VALID_ID)).thenReturn(Optional.of(4L));
+        when(imageRepository.findImageSlice(VALID_ID, IMAGE_HASH, 0, 4)).thenReturn(Optional.of(expectedImage));
+
 
+        PostImage image = postService.getImage(VALID_ID, ImageVariant.ORIGINAL);
 
-        byte[] image = postService.getImage(VALID_ID);
+        assertThat(image.metadata()).isEqualTo(metadata);
+        verify(imageRepository, never()).findImageSlice(anyLong(), anyString(), anyLong(), anyInt());
+        assertThat(image.content().getContentAsByteArray()).isEqualTo(expectedImage);
+    }
+
+    @Test
+    void getImage_shouldReturnVariantOrQueueItAndReturnOriginal() throws IOException {
+        byte[] thumb = new byte[]{5, 6};
+        ImageMetadata metadata = new ImageMetadata(null, IMAGE_HASH, "image/png", Instant.now());
+        when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
+        when(imageRepository.findImageMetadata(VALID_ID)).thenReturn(Optional.of(metadata));
+        when(imageRepository.findImageVariant(VALID_ID, "thumb", IMAGE_HASH)).thenReturn(Optional.of(thumb));
+        when(imageRepository.findImageVariant(VALID_ID, "medium", IMAGE_HASH)).thenReturn(Optional.empty());
+
+        PostImage thumbImage = postService.getImage(VALID_ID, ImageVariant.THUMB);
+        PostImage mediumImage = postService.getImage(VALID_ID, ImageVariant.MEDIUM);
+
+        assertThat(thumbImage.content().getContentAsByteArray()).isEqualTo(thumb);
+        assertThat(thumbImage.metadata().hash()).isEqualTo(IMAGE_HASH + "-thumb");
+        assertThat(thumbImage.metadata().contentType()).isEqualTo(MediaType.IMAGE_JPEG_VALUE);
+        assertThat(thumbImage.substitute()).isFalse();
+        assertThat(mediumImage.metadata()).isEqualTo(metadata);
+        assertThat(mediumImage.substitute()).isTrue();
+        verify(imageVariantGenerator).enqueue(VALID_ID);
+    }
+
+    @Test
+    void getImage_shouldReturnOriginalWithoutQueueingVariantOfImageWithoutHash() {
+        ImageMetadata metadata = new ImageMetadata(null, null, null, null);
+        when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
+        when(imageRepository.findImageMetadata(VALID_ID)).thenReturn(Optional.of(metadata));
+
+        PostImage thumbImage = postService.getImage(VALID_ID, ImageVariant.THUMB);
+
+        assertThat(thumbImage.metadata()).isEqualTo(metadata);
+        assertThat(thumbImage.substitute()).isTrue();
+        verify(imageRepository, never()).findImageVariant(anyLong(), anyString(), any());
+        verify(imageVariantGenerator, never()).enqueue(anyLong());
+    }
+
+    @Test
+    void getImage_shouldThrowImageNotFoundExceptionFail() {
+        when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
+        when(imageRepository.findImageMetadata(VALID_ID)).thenReturn(Optional.empty());
 
-        assertThat(image).isEqualTo(expectedImage);
+        assertThatExceptionOfType(ImageNotFoundException.class)
+                .isThrownBy(() -> postService.getImage(VALID_ID, ImageVariant.ORIGINAL))
+                .withMessage(messageSource.getMessage(MessageKey.IMAGE_NOT_FOUND_EX, new Object[]{VALID_ID}, Locale.ENGLISH));
     }
     @Test
     void getImage_shouldThrowEntityNotFoundExceptionFail() {
         when(postManagementRepository.existsById(INVALID_ID)).thenReturn(false);
 
         assertThatExceptionOfType(EntityNotFoundException.class)
-                .isThrownBy(() -> postService.getImage(INVALID_ID))
+                .isThrownBy(() -> postService.getImage(INVALID_ID, ImageVariant.ORIGINAL))
                 .withMessage(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{INVALID_ID}, Locale.ENGLISH));
 
         verify(postManagementRepository, Mockito.times(0)).getImage(INVALID_ID);
@@ -205,11 +265,58 @@ class PostServiceTest {
     @Test
     void updateImage_shouldCallSaveFileAndUpdateImageSuccess() throws IOException {
         MultipartFile image =new MockMultipartFile("image",new byte[]{1, 2, 3, 4});
-        when(postManagementRepository.existsById(VALID_ID)).thenReturn(true);
-        when(postManagementRepository.updateImage(VALID_ID,image.getBytes())).thenReturn(true);
+        when(imageRepository.insertImage(eq(IMAGE_HASH), any(InputStream.class), eq(4L))).thenReturn(true);
+        when(imageRepository.referenceImage(VALID_ID, IMAGE_HASH, null)).thenReturn(true);
 
         postService.updateImage(VALID_ID,image);
 
-        verify(postManagementRepository,Mockito.times(1)).updateImage(VALID_ID,image.getBytes());
+        verify(imageRepository,Mockito.times(1)).insertImage(eq(IMAGE_HASH), any(InputStream.class), eq(4L));
+        verify(imageRepository).updateImageMetadata(VALID_ID, IMAGE_HASH, MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    }
+
+    @Test
+    void updateImage_shouldOnlyReferenceAlreadyStoredImage() {
+        MultipartFile image = new MockMultipartFile("image", new byte[]{1, 2, 3, 4});
+        when(imageRepository.acquireStoredImage(IMAGE_HASH)).thenReturn(true);
+        when(imageRepository.referenceImage(VALID_ID, IMAGE_HASH, null)).thenReturn(true);
+
+        postService.updateImage(VALID_ID, image);
+
+        verify(imageRepository, Mockito.never()).insertImage(anyString(), any(InputStream.class), anyLong());
+        verify(imageRepository).updateImageMetadata(VALID_ID, IMAGE_HASH, MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    }
+
+    @Test
+    void updateImage_shouldStoreContentOfImageRowWithoutIt() {
+        MultipartFile image = new MockMultipartFile("image", new byte[]{1, 2, 3, 4});
+        when(imageRepository.existsImage(IMAGE_HASH)).thenReturn(true);
+        when(imageRepository.storeMissingImage(eq(IMAGE_HASH), any(InputStream.class), eq(4L))).thenReturn(true);
+        when(imageRepository.referenceImage(VALID_ID, IMAGE_HASH, null)).thenReturn(true);
+
+        postService.updateImage(VALID_ID, image);
+
+        verify(imageRepository).storeMissingImage(eq(IMAGE_HASH), any(InputStream.class), eq(4L));
+        verify(imageRepository, Mockito.never()).insertImage(anyString(), any(InputStream.class), anyLong());
+        verify(imageRepository, Mockito.never()).acquireImage(anyString());
+    }
+
+    @Test
+    void updateImage_shouldRecordImageTypeOfFileNameWhenDeclaredTypeIsNotImage() {
+        MultipartFile image = new MockMultipartFile("image", "banner.png", MediaType.TEXT_HTML_VALUE, new byte[]{1, 2, 3, 4});
+        when(imageRepository.referenceImage(eq(VALID_ID), anyString(), isNull())).thenReturn(true);
+
+        postService.updateImage(VALID_ID, image);
+
+        verify(imageRepository).updateImageMetadata(eq(VALID_ID), anyString(), eq(MediaType.IMAGE_PNG_VALUE));
+    }
+
+    @Test
+    void updateImage_shouldThrowEntityNotFoundExceptionFail() throws IOException {
+        MultipartFile image =new MockMultipartFile("image",new byte[]{1, 2, 3, 4});
+        when(imageRepository.referenceImage(eq(INVALID_ID), anyString(), isNull())).thenReturn(false);
+
+        assertThatExceptionOfType(EntityNotFoundException.class)
+                .isThrownBy(() -> postService.updateImage(INVALID_ID,image))
+                .withMessage(messageSource.getMessage(MessageKey.POST_NOT_FOUND, new Object[]{INVALID_ID}, Locale.ENGLISH));
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,13 @@
 DELETE
 FROM post_tags;
 DELETE
+FROM posts_tags;
+DELETE
 FROM comments;
 DELETE
 FROM posts;
+DELETE
+FROM images;
 ALTER TABLE posts
     ALTER COLUMN id RESTART WITH 1;
 ALTER TABLE comments
@@ -21,8 +25,8 @@ VALUES ('test comment1', 1),
        ('test comment5', 2),
        ('test comment6', 3);
 
-INSERT INTO post_tags(post_id, tag)
-VALUES (1, 'test_tag1'),
-       (2, 'test_tag1'),
-       (2, 'test_tag2'),
-       (3, ('test_tag3'))
+INSERT INTO posts_tags(post_id, tag_id)
+VALUES (1, (SELECT id FROM tags WHERE name = 'test_tag1')),
+       (2, (SELECT id FROM tags WHERE name = 'test_tag1')),
+       (2, (SELECT id FROM tags WHERE name = 'test_tag2')),
+       (3, (SELECT id FROM tags WHERE name = 'test_tag3'))
@@ -4,6 +4,10 @@ CREATE TABLE IF NOT EXISTS posts
     title          VARCHAR(256)                        NOT NULL,
     text           TEXT                                NOT NULL,
     image          BYTEA,
+    image_path     VARCHAR(512),
+    image_hash     VARCHAR(64),
+    image_content_type VARCHAR(128),
+    image_updated_at TIMESTAMP WITH TIME ZONE,
     likes_count    BIGINT    DEFAULT 0,
     comments_count BIGINT    DEFAULT 0,
     created_at     TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
@@ -24,6 +28,34 @@ CREATE TABLE IF NOT EXISTS post_tags
     CONSTRAINT pk_posts_tags PRIMARY KEY (post_id, tag)
 );
 
+CREATE TABLE IF NOT EXISTS tags
+(
+    id   INTEGER GENERATED ALWAYS AS IDENTITY NOT NULL,
+    name VARCHAR(256)                         NOT NULL,
+
+    CONSTRAINT pk_tags PRIMARY KEY (id),
+    CONSTRAINT uk_tags_tag_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS posts_tags
+(
+    post_id BIGINT  NOT NULL,
+    tag_id  INTEGER NOT NULL,
+
+    CONSTRAINT fk_posts_tags_ids_posts FOREIGN KEY (post_id) REFERENCES posts (id) ON DELETE CASCADE,
+    CONSTRAINT fk_posts_tags_ids_tags FOREIGN KEY (tag_id) REFERENCES tags (id),
+    CONSTRAINT pk_posts_tags_ids PRIMARY KEY (post_id, tag_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_posts_tags_tag_id_post_id ON posts_tags (tag_id, post_id);
+
+-- committed once, the ids of the test tags stay the same for the cached TagDictionary of every test
+INSERT INTO tags (name)
+VALUES ('test_tag1'),
+       ('test_tag2'),
+       ('test_tag3')
+ON CONFLICT DO NOTHING;
+
 
 
 
@@ -36,4 +68,38 @@ CREATE TABLE IF NOT EXISTS comments
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
 
     CONSTRAINT pk_comments PRIMARY KEY (id)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS idx_comments_post_id_id ON comments (post_id, id);
+
+
+CREATE TABLE IF NOT EXISTS post_like_shards
+(
+    post_id BIGINT  NOT NULL,
+    slot    INTEGER NOT NULL,
+    likes   BIGINT  NOT NULL DEFAULT 0,
+
+    CONSTRAINT fk_post_like_shards_posts FOREIGN KEY (post_id) REFERENCES posts (id) ON DELETE CASCADE,
+    CONSTRAINT pk_post_like_shards PRIMARY KEY (post_id, slot)
+);
+
+CREATE TABLE IF NOT EXISTS post_image_variants
+(
+    post_id     BIGINT      NOT NULL,
+    variant     VARCHAR(16) NOT NULL,
+    source_hash VARCHAR(64) NOT NULL,
+    image       BYTEA       NOT NULL,
+
+    CONSTRAINT fk_post_image_variants_posts FOREIGN KEY (post_id) REFERENCES posts (id) ON DELETE CASCADE,
+    CONSTRAINT pk_post_image_variants PRIMARY KEY (post_id, variant)
+);
+
+CREATE TABLE IF NOT EXISTS images
+(
+    hash      VARCHAR(64) NOT NULL,
+    image     BYTEA,
+    ref_count BIGINT      NOT NULL DEFAULT 0,
+
+    CONSTRAINT pk_images PRIMARY KEY (hash),
+    CONSTRAINT chk_images_ref_count CHECK (ref_count >= 0)
+);